@@ -1,8 +1,15 @@
 package controllers;
 
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
 import com.google.inject.Inject;
+import jsonrpc.ConcurrencyLimiter;
 import jsonrpc.JsonRpcFactory;
+import jsonrpc.Priority;
 import jsonrpc.RabbitConfig;
+import jsonrpc.SenderProxy;
 import models.Person;
 import play.Configuration;
 import play.Logger;
@@ -14,16 +21,21 @@ import remote.RemotePersonRepository;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 
 public class Application extends Controller {
     private final RemoteCalculator remoteCalculator;
     private final RemotePersonRepository remotePersonRepo;
+    private final ConcurrencyLimiter personRepoLimiter;
+    private final Materializer materializer;
 
     @Inject
-    public Application(JsonRpcFactory jsonRpcFactory, Configuration config) {
+    public Application(JsonRpcFactory jsonRpcFactory, Configuration config, Materializer materializer) {
+        this.materializer = materializer;
         this.remoteCalculator = jsonRpcFactory.createClient(RemoteCalculator.class, "", config.getString("rabbitmq.rpcqueue"), 10000);
         this.remotePersonRepo = jsonRpcFactory.createClient(RemotePersonRepository.class, "", config.getString("rabbitmq.personRepoQueue"));
+        this.personRepoLimiter = SenderProxy.limiterOf(remotePersonRepo);
     }
 
     public Result index() {
@@ -52,9 +64,18 @@ public class Application extends Controller {
     }
 
     public CompletionStage<Result> getPersonList() {
-        return remotePersonRepo.getPeople().thenApply(result -> {
-            Logger.info("People: " + result);
-            return ok(Json.toJson(result));
+        // Shed load here rather than queueing behind a slow repository
+        if(personRepoLimiter.isSaturated()) return CompletableFuture.completedFuture(status(SERVICE_UNAVAILABLE, "Too many calls in flight"));
+        // The 200 is only committed once the first person arrived, a repository failing up front gets an error status
+        return remotePersonRepo.getPeopleStream().prefixAndTail(1).runWith(Sink.head(), materializer).thenApply(split -> {
+            // People are written out as they arrive, the list is never held in memory as a whole
+            final Source<ByteString, ?> json = Source.from(split.first()).concat(split.second())
+                    .map(person -> ByteString.fromString(Json.stringify(Json.toJson(person))))
+                    .intersperse(ByteString.fromString("["), ByteString.fromString(","), ByteString.fromString("]"));
+            return ok().chunked(json).as("application/json");
+        }).exceptionally(e -> {
+            Logger.error("Listing people failed", e);
+            return status(BAD_GATEWAY, "The person repository failed");
         });
     }
 
@@ -69,7 +90,8 @@ public class Application extends Controller {
         final Person person = new Person();
         person.setAge(25);
         person.setName("Slim Shady");
-        return remotePersonRepo.addPerson(person).thenApply(result -> {
+        // A single person added from a page is waited on by a user, unlike bulk imports of the same method
+        return SenderProxy.withPriority(Priority.INTERACTIVE, () -> remotePersonRepo.addPerson(person)).thenApply(result -> {
             Logger.info("People: "  + result);
             return ok(Json.toJson(result));
         });
@@ -95,7 +117,7 @@ public class Application extends Controller {
         final List<Integer> ids = new ArrayList<>();
         ids.add(1);
         ids.add(3);
-        return remotePersonRepo.getPeople(ids).thenApply(result -> {
+        return SenderProxy.withPriority(Priority.INTERACTIVE, () -> remotePersonRepo.getPeople(ids)).thenApply(result -> {
             Logger.info("People: " + result);
             return ok(Json.toJson(result));
         });
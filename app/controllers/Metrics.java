@@ -0,0 +1,19 @@
+package controllers;
+
+import com.google.inject.Inject;
+import jsonrpc.metrics.RpcMetrics;
+import play.mvc.Controller;
+import play.mvc.Result;
+
+public class Metrics extends Controller {
+    private final RpcMetrics rpcMetrics;
+
+    @Inject
+    public Metrics(RpcMetrics rpcMetrics) {
+        this.rpcMetrics = rpcMetrics;
+    }
+
+    public Result metrics() {
+        return ok(rpcMetrics.scrape()).as(RpcMetrics.CONTENT_TYPE);
+    }
+}
\ No newline at end of file
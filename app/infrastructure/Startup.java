@@ -15,6 +15,7 @@ public class Startup {
     @Inject
     public Startup(JsonRpcFactory jsonRpcFactory, Configuration config) {
         jsonRpcFactory.createServer(config.getString("rabbitmq.rpcqueue"), RemoteCalculator.class, RemoteCalculatorImpl.class);
-        jsonRpcFactory.createServer(config.getString("rabbitmq.personRepoQueue"), RemotePersonRepository.class, RemotePersonRepositoryImpl.class);
+        // The repository keeps its people in memory, a second instance would have a list of its own
+        jsonRpcFactory.createServer(config.getString("rabbitmq.personRepoQueue"), RemotePersonRepository.class, RemotePersonRepositoryImpl.class, 1);
     }
 }
\ No newline at end of file
@@ -21,7 +21,7 @@ public class ActorConsumer extends DefaultConsumer {
 
     @Override
     public void handleDelivery(String consumerTag, Envelope envelope, BasicProperties properties, byte[] body) throws IOException {
-        final Protocol.InvokeRabbitReply message = new Protocol.InvokeRabbitReply(consumerTag, envelope, properties, new String(body));
+        final Protocol.InvokeRabbitReply message = new Protocol.InvokeRabbitReply(consumerTag, envelope, properties, body);
         actor.tell(message, ActorRef.noSender());
     }
 
@@ -0,0 +1,15 @@
+package jsonrpc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Lets calls of a remote method join an identical call, same method and equal arguments, that is still in flight
+ * instead of sending their own request. Only for methods whose callers may share one result.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Coalesce {
+}
\ No newline at end of file
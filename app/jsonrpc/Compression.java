@@ -0,0 +1,113 @@
+package jsonrpc;
+
+import com.rabbitmq.client.AMQP;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip compression of message bodies above a size threshold, flagged through the AMQP content encoding so the
+ * receiving side knows to inflate them. Keeps running totals of bytes saved and time spent.
+ */
+public class Compression {
+    public static final String GZIP = "gzip";
+    public static final int DEFAULT_MAX_INFLATED_BYTES = 64 * 1024 * 1024;
+
+    private final int threshold;
+    private final int maxInflatedBytes;
+    private final AtomicLong compressed = new AtomicLong();
+    private final AtomicLong bytesBefore = new AtomicLong();
+    private final AtomicLong bytesAfter = new AtomicLong();
+    private final AtomicLong compressNanos = new AtomicLong();
+    private final AtomicLong decompressed = new AtomicLong();
+    private final AtomicLong decompressNanos = new AtomicLong();
+
+    public Compression(int threshold) {
+        this(threshold, DEFAULT_MAX_INFLATED_BYTES);
+    }
+
+    /**
+     * @param threshold smallest body size in bytes that gets compressed, 0 or less disables compression
+     * @param maxInflatedBytes largest body accepted once inflated, so a small compressed body cannot exhaust memory
+     */
+    public Compression(int threshold, int maxInflatedBytes) {
+        this.threshold = threshold;
+        this.maxInflatedBytes = maxInflatedBytes;
+    }
+
+    /**
+     * Compresses the body if it reaches the threshold and gets smaller, and then sets the matching content encoding
+     * on {@code props}.
+     */
+    public byte[] encode(byte[] body, AMQP.BasicProperties.Builder props) throws IOException {
+        if(threshold <= 0 || body.length < threshold) return body;
+        final long start = System.nanoTime();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+            gzip.write(body);
+        }
+        final byte[] result = out.toByteArray();
+        compressNanos.addAndGet(System.nanoTime() - start);
+        // Already compressed or random data only grows
+        if(result.length >= body.length) return body;
+        compressed.incrementAndGet();
+        bytesBefore.addAndGet(body.length);
+        bytesAfter.addAndGet(result.length);
+        props.contentEncoding(GZIP);
+        return result;
+    }
+
+    public byte[] decode(byte[] body, String contentEncoding) throws IOException {
+        if(contentEncoding == null || contentEncoding.isEmpty() || contentEncoding.equals("identity")) return body;
+        if(!contentEncoding.equals(GZIP)) throw new IOException("Unsupported content encoding: " + contentEncoding);
+        final long start = System.nanoTime();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(maxInflatedBytes, body.length * 4L));
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body), 8192)) {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while((read = gzip.read(buffer)) != -1) {
+                if(out.size() + read > maxInflatedBytes) throw new IOException("Body inflates to more than " + maxInflatedBytes + " bytes");
+                out.write(buffer, 0, read);
+            }
+        }
+        decompressNanos.addAndGet(System.nanoTime() - start);
+        decompressed.incrementAndGet();
+        return out.toByteArray();
+    }
+
+    public long getCompressedMessages() {
+        return compressed.get();
+    }
+
+    public long getBytesBeforeCompression() {
+        return bytesBefore.get();
+    }
+
+    public long getBytesAfterCompression() {
+        return bytesAfter.get();
+    }
+
+    /**
+     * Compressed size over original size of everything compressed so far, 1 when nothing was.
+     */
+    public double getCompressionRatio() {
+        final long before = bytesBefore.get();
+        return before == 0 ? 1.0 : (double) bytesAfter.get() / before;
+    }
+
+    public long getCompressNanos() {
+        return compressNanos.get();
+    }
+
+    public long getDecompressedMessages() {
+        return decompressed.get();
+    }
+
+    public long getDecompressNanos() {
+        return decompressNanos.get();
+    }
+}
\ No newline at end of file
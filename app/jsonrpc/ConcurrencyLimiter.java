@@ -0,0 +1,146 @@
+package jsonrpc;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the calls a client has in flight. A call over the limit is handled by the {@link Overflow} policy; every
+ * granted permit must be given back with {@link #release()} once the call completes.
+ */
+public class ConcurrencyLimiter {
+    public enum Overflow {
+        /** Fail the call at once */
+        REJECT,
+        /** Park the call until a permit frees up, at most maxQueued of them, and reject the rest */
+        QUEUE,
+        /** Block the calling thread up to waitMillis for a permit, then reject */
+        WAIT;
+
+        public static Overflow forName(String name) {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final CompletableFuture<Void> GRANTED = CompletableFuture.completedFuture(null);
+
+    private final int maxInFlight;
+    private final Overflow overflow;
+    private final int maxQueued;
+    private final long waitMillis;
+    private final ArrayDeque<CompletableFuture<Void>> queued = new ArrayDeque<>();
+    private final LongAdder rejected = new LongAdder();
+    private int inFlight;
+    private int waiting;
+
+    /**
+     * @param maxInFlight calls allowed in flight at once, 0 for no limit
+     */
+    public ConcurrencyLimiter(int maxInFlight, Overflow overflow, int maxQueued, long waitMillis) {
+        this.maxInFlight = maxInFlight;
+        this.overflow = overflow;
+        this.maxQueued = maxQueued;
+        this.waitMillis = waitMillis;
+    }
+
+    public static ConcurrencyLimiter unlimited() {
+        return new ConcurrencyLimiter(0, Overflow.REJECT, 0, 0);
+    }
+
+    /**
+     * Completes once the call may go ahead, or fails with a {@link RejectedExecutionException} when it may not.
+     */
+    public CompletionStage<Void> acquire() {
+        if(maxInFlight <= 0) return GRANTED;
+        synchronized (this) {
+            if(inFlight < maxInFlight) {
+                inFlight++;
+                return GRANTED;
+            }
+            switch (overflow) {
+                case QUEUE:
+                    if(queued.size() < maxQueued) {
+                        final CompletableFuture<Void> permit = new CompletableFuture<>();
+                        queued.add(permit);
+                        return permit;
+                    }
+                    break;
+                case WAIT:
+                    if(await()) return GRANTED;
+                    break;
+            }
+        }
+        return reject();
+    }
+
+    public void release() {
+        if(maxInFlight <= 0) return;
+        final CompletableFuture<Void> next;
+        synchronized (this) {
+            next = queued.poll();
+            // A queued call takes the permit over, otherwise it goes back to the pool
+            if(next == null) {
+                inFlight--;
+                if(waiting > 0) notify();
+            }
+        }
+        if(next != null) next.complete(null);
+    }
+
+    private boolean await() {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        waiting++;
+        try {
+            while(inFlight >= maxInFlight) {
+                final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if(remaining <= 0) return false;
+                wait(remaining);
+            }
+            inFlight++;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting--;
+        }
+    }
+
+    private CompletionStage<Void> reject() {
+        rejected.increment();
+        final CompletableFuture<Void> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new RejectedExecutionException("More than " + maxInFlight + " calls in flight"));
+        return failed;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return queued.size() + waiting;
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * True when a new call would not go ahead right away; callers can use it to shed load before calling at all.
+     */
+    public synchronized boolean isSaturated() {
+        return maxInFlight > 0 && inFlight >= maxInFlight;
+    }
+}
\ No newline at end of file
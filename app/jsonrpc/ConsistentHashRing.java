@@ -0,0 +1,75 @@
+package jsonrpc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Maps keys onto a fixed number of shards. Every shard owns {@code virtualNodes} points on a 64 bit ring and a key
+ * belongs to the first point at or after its hash, so keys spread evenly and changing the number of shards only
+ * moves the keys of the shards added or removed. The hash is fixed, every JVM places a key on the same shard.
+ */
+public class ConsistentHashRing {
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final int shards;
+    private final long[] points;
+    private final int[] owners;
+
+    public ConsistentHashRing(int shards) {
+        this(shards, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(int shards, int virtualNodes) {
+        if(shards < 1) throw new IllegalArgumentException("A ring needs at least one shard");
+        this.shards = shards;
+        final int size = shards * virtualNodes;
+        final long[][] nodes = new long[size][];
+        for (int shard = 0; shard < shards; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                nodes[shard * virtualNodes + node] = new long[]{hash(("shard-" + shard + "#" + node).getBytes(StandardCharsets.UTF_8)), shard};
+            }
+        }
+        Arrays.sort(nodes, (a, b) -> Long.compare(a[0], b[0]));
+        points = new long[size];
+        owners = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = nodes[i][0];
+            owners[i] = (int) nodes[i][1];
+        }
+    }
+
+    /**
+     * The queue serving one shard of a sharded service; a single shard keeps the plain queue name.
+     */
+    public static String queueName(String queueName, int shard, int shards) {
+        return shards == 1 ? queueName : queueName + '.' + shard;
+    }
+
+    public int shards() {
+        return shards;
+    }
+
+    public int shard(byte[] key) {
+        if(shards == 1) return 0;
+        final int i = Arrays.binarySearch(points, hash(key));
+        final int point = i >= 0 ? i : -i - 1;
+        return owners[point == points.length ? 0 : point];
+    }
+
+    /**
+     * FNV-1a followed by the MurmurHash3 finalizer, which spreads keys differing in a few bits across the ring.
+     */
+    static long hash(byte[] key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe1a85ec3L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,71 @@
+package jsonrpc;
+
+import jsonrpc.models.Procedure;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+
+/**
+ * Per-interface lookup structures built once from a {@link jsonrpc.models.ServiceDescriptor}: procedures indexed by
+ * id, overloads indexed by name and arity, and (on the server side) a pre-bound invoker for every procedure.
+ */
+public class DispatchTable {
+    private final Procedure[] procedures;
+    private final MethodHandle[] invokers;
+    private final Map<String, Candidate[][]> overloads;
+
+    public DispatchTable(Procedure[] procedures, MethodHandle[] invokers, Map<String, Candidate[][]> overloads) {
+        this.procedures = procedures;
+        this.invokers = invokers;
+        this.overloads = overloads;
+    }
+
+    public Procedure procedure(int id) {
+        return id >= 0 && id < procedures.length ? procedures[id] : null;
+    }
+
+    /**
+     * Invoker taking the target instance and the argument array, returning the method result.
+     */
+    public MethodHandle invoker(int id) {
+        return id >= 0 && id < invokers.length ? invokers[id] : null;
+    }
+
+    public Procedure resolve(String name, Object[] args) {
+        final Candidate[][] byArity = overloads.get(name);
+        final int arity = args != null ? args.length : 0;
+        if(byArity == null || arity >= byArity.length || byArity[arity] == null) return null;
+        final Candidate[] candidates = byArity[arity];
+        if(candidates.length == 1) return candidates[0].procedure;
+        for(Candidate candidate : candidates) {
+            if(candidate.accepts(args)) return candidate.procedure;
+        }
+        return null;
+    }
+
+    public static class Candidate {
+        public final Procedure procedure;
+        private final Class<?>[] parameterClasses;
+
+        /**
+         * @param parameterClasses the class of each parameter, null for one accepting anything; arguments arrive boxed,
+         *                         so primitive classes stand for their wrappers
+         */
+        public Candidate(Procedure procedure, Class<?>[] parameterClasses) {
+            this.procedure = procedure;
+            this.parameterClasses = new Class<?>[parameterClasses.length];
+            for(int i = 0; i < parameterClasses.length; i++) {
+                final Class<?> parameterClass = parameterClasses[i];
+                this.parameterClasses[i] = parameterClass != null ? MethodType.methodType(parameterClass).wrap().returnType() : null;
+            }
+        }
+
+        private boolean accepts(Object[] args) {
+            for(int i = 0; i < parameterClasses.length; i++) {
+                if(parameterClasses[i] != null && args[i] != null && !parameterClasses[i].isInstance(args[i])) return false;
+            }
+            return true;
+        }
+    }
+}
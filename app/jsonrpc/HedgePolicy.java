@@ -0,0 +1,66 @@
+package jsonrpc;
+
+import jsonrpc.metrics.ProcedureMetrics;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When to hedge idempotent calls and how many hedges to allow. A call is hedged once it has waited longer than a
+ * percentile of the latency observed for its procedure; every call earns {@code budget} of a hedge, so hedges add
+ * at most that fraction to the load, with a few saved up for bursts.
+ *
+ * Not thread safe, it is meant to be owned by a single actor.
+ */
+public class HedgePolicy {
+    private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double MAX_TOKENS = 10;
+
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long minSamples;
+    private final double budget;
+    private double tokens;
+    private long[] delays = new long[0];
+    private long[] refreshedAt = new long[0];
+
+    public HedgePolicy(double percentile, long minDelay, TimeUnit unit, long minSamples, double budget) {
+        this.percentile = percentile;
+        this.minDelayNanos = unit.toNanos(minDelay);
+        this.minSamples = minSamples;
+        this.budget = budget;
+    }
+
+    public void called() {
+        tokens = Math.min(MAX_TOKENS, tokens + budget);
+    }
+
+    public boolean tryHedge() {
+        if(tokens < 1) return false;
+        tokens--;
+        return true;
+    }
+
+    /**
+     * How long a call of the procedure waits before it is hedged, or -1 while too few calls were seen to tell.
+     */
+    public long delayNanos(ProcedureMetrics metrics, long nowNanos) {
+        if(budget <= 0) return -1;
+        final int id = metrics.id;
+        if(id >= delays.length) {
+            final int size = Math.max(id + 1, delays.length * 2);
+            final int from = delays.length;
+            delays = Arrays.copyOf(delays, size);
+            refreshedAt = Arrays.copyOf(refreshedAt, size);
+            Arrays.fill(delays, from, size, -1);
+            Arrays.fill(refreshedAt, from, size, nowNanos - REFRESH_NANOS);
+        }
+        // Reading a percentile walks the whole histogram, once a second is recent enough
+        if(nowNanos - refreshedAt[id] >= REFRESH_NANOS) {
+            final long latency = metrics.latencyPercentileNanos(percentile, minSamples);
+            delays[id] = latency < 0 ? -1 : Math.max(minDelayNanos, latency);
+            refreshedAt[id] = nowNanos;
+        }
+        return delays[id];
+    }
+}
\ No newline at end of file
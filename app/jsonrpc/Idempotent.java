@@ -0,0 +1,15 @@
+package jsonrpc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a remote method that may safely run more than once per call. A call still unanswered after most calls of
+ * the method would have been is hedged: sent once more, possibly to another replica, and the first reply wins.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Idempotent {
+}
\ No newline at end of file
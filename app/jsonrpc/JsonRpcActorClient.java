@@ -1,18 +1,24 @@
 package jsonrpc;
 
 import akka.actor.AbstractActorWithStash;
+import akka.actor.ActorRef;
+import akka.actor.Cancellable;
 import akka.actor.Props;
 import akka.japi.pf.ReceiveBuilder;
 import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.rabbitmq.client.AMQP;
-import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.Connection;
+import jsonrpc.codec.Codec;
+import jsonrpc.codec.Codecs;
+import jsonrpc.metrics.ProcedureMetrics;
+import jsonrpc.metrics.RpcMetrics;
 import jsonrpc.models.ActorConsumerHolder;
 import jsonrpc.models.Procedure;
 import jsonrpc.models.Protocol;
 
 import jsonrpc.models.ServiceDescriptor;
+import jsonrpc.transport.Transport;
 import play.Logger;
 import play.libs.Json;
 import scala.PartialFunction;
@@ -20,62 +26,97 @@ import scala.concurrent.duration.Duration;
 import scala.runtime.BoxedUnit;
 
 import java.io.IOException;
-import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 public class JsonRpcActorClient extends AbstractActorWithStash {
+    static final String SENT_AT_HEADER = "x-sent-at";
+    static final String DEADLINE_HEADER = "x-deadline";
+
     private final Map<String, ActorConsumerHolder> calls = new HashMap<>();
+    private final Map<CallKey, ActorConsumerHolder> coalesced = new HashMap<>();
+    private final Map<String, List<String>> batches = new HashMap<>();
+    private final ObjectWriter keyWriter = Json.mapper().writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
     private final String exchange;
-    private final String routingKey;
+    private final ReplicaBalancer balancer;
     private final int timeout;
-    private java.time.Duration timeoutDuration = null;
+    private final Codec codec;
+    private final long tickMillis;
+    private final long streamIdleNanos;
+    private final TimingWheel<ActorConsumerHolder> timingWheel;
+    private final TimingWheel<ActorConsumerHolder> hedgeWheel;
+    private final HedgePolicy hedgePolicy;
     private final JsonRpcService jsonRpcService;
+    private final RpcMetrics rpcMetrics;
+    private final RpcMetrics.Counters counters;
+    private final int batchMaxSize;
+    private final long batchWindowMillis;
+    private final List<Protocol.RabbitMessage> batch = new ArrayList<>();
 
-    private Optional<Connection> connection;
-    private Optional<Channel> channel;
+    private Transport.ClientLink link;
     private int correlationId;
     private ServiceDescriptor serviceDescriptor;
+    private DispatchTable dispatchTable;
+    private ProcedureMetrics[] procedureMetrics;
+    private Cancellable ticker;
+    private Cancellable batchFlush;
+    private int batchId;
+    private int batchReplica;
+
+    public static Props props(Transport transport, RabbitConfig rabbitConfig, String exchange, String routingKey, int timeout, Codec codec, JsonRpcService jsonRpcService, RpcMetrics rpcMetrics) {
+        return props(transport, rabbitConfig, exchange, new String[]{routingKey}, timeout, codec, jsonRpcService, rpcMetrics);
+    }
 
-    public static Props props(RabbitConnection rabbitConnection, String exchange, String routingKey, int timeout, JsonRpcService jsonRpcService) {
-        return Props.create(JsonRpcActorClient.class, rabbitConnection, exchange, routingKey, timeout, jsonRpcService);
+    /**
+     * A client of a service replicated behind several routing keys, spreading calls across them by load.
+     */
+    public static Props props(Transport transport, RabbitConfig rabbitConfig, String exchange, String[] routingKeys, int timeout, Codec codec, JsonRpcService jsonRpcService, RpcMetrics rpcMetrics) {
+        return Props.create(JsonRpcActorClient.class, transport, rabbitConfig, exchange, routingKeys, timeout, codec, jsonRpcService, rpcMetrics);
     }
 
-    public JsonRpcActorClient(RabbitConnection rabbitConnection, String exchange, String routingKey, int timeout, JsonRpcService jsonRpcService) {
+    public JsonRpcActorClient(Transport transport, RabbitConfig rabbitConfig, String exchange, String[] routingKeys, int timeout, Codec codec, JsonRpcService jsonRpcService, RpcMetrics rpcMetrics) {
         this.exchange = exchange;
-        this.routingKey = routingKey;
+        this.codec = codec;
+        this.balancer = new ReplicaBalancer(routingKeys, ReplicaBalancer.Strategy.forName(rabbitConfig.getBalancer()), new Random());
         this.timeout = timeout;
-        this.timeoutDuration = java.time.Duration.ofMillis(timeout);
+        this.tickMillis = rabbitConfig.getTimerTickMillis();
+        this.streamIdleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(tickMillis, rabbitConfig.getStreamIdleTimeoutMillis()));
+        this.timingWheel = new TimingWheel<>(tickMillis, TimeUnit.MILLISECONDS, rabbitConfig.getTimerWheelSize(), System.nanoTime());
+        this.hedgeWheel = new TimingWheel<>(tickMillis, TimeUnit.MILLISECONDS, rabbitConfig.getTimerWheelSize(), System.nanoTime());
+        this.hedgePolicy = new HedgePolicy(rabbitConfig.getHedgePercentile(), rabbitConfig.getHedgeMinDelayMillis(), TimeUnit.MILLISECONDS,
+                rabbitConfig.getHedgeMinSamples(), rabbitConfig.getHedgeBudget());
         this.jsonRpcService = jsonRpcService;
+        this.rpcMetrics = rpcMetrics;
+        this.counters = rpcMetrics.counters(RpcMetrics.Side.CLIENT);
+        this.batchMaxSize = rabbitConfig.getBatchMaxSize();
+        this.batchWindowMillis = rabbitConfig.getBatchWindowMillis();
 
         try {
-            connection = Optional.of(rabbitConnection.getConnection());
-            channel = Optional.of(connection.get().createChannel());
+            link = transport.connectClient(self());
         } catch (Exception e) {
-            Logger.error("Error getting channel", e);
+            Logger.error("Error connecting client", e);
         }
 
-        try {
-            final Protocol.Invoke describe = new Protocol.Invoke("system.describe", null);
-            publish(describe);
-        } catch (IOException e) {
-            Logger.error("Error in sending system.describe", e);
-        }
+        final Protocol.Invoke describe = new Protocol.Invoke("system.describe", null);
+        publish(describe);
 
         receive(
                 ReceiveBuilder.match(Protocol.InvokeRabbitReply.class, reply -> {
-                    final ActorConsumerHolder holder = calls.remove(reply.properties.getCorrelationId());
+                    counters.received(reply.body.length);
+                    final ActorConsumerHolder holder = removeCall(reply.properties.getCorrelationId());
+                    if(holder == null) return;
                     final Protocol.InvokeReply invokeReply = handleReply(reply, holder);
                     if(invokeReply.getReplyType() == Protocol.InvokeReplyType.SERVICE_DESCRIPTOR) {
                         this.serviceDescriptor = invokeReply.getServiceDescriptor();
+                        this.dispatchTable = jsonRpcService.createDispatchTable(serviceDescriptor);
+                        this.procedureMetrics = rpcMetrics.procedures(RpcMetrics.Side.CLIENT, serviceDescriptor);
                         context().become(started);
                         unstashAll();
-                        if(timeout != -1) {
-                            context().system().scheduler().schedule(Duration.create(50, TimeUnit.MILLISECONDS),
-                                    Duration.create(timeout, TimeUnit.MILLISECONDS),
-                                    self(), "tick", context().dispatcher(), self());
-                        }
+                        ticker = context().system().scheduler().schedule(Duration.create(tickMillis, TimeUnit.MILLISECONDS),
+                                Duration.create(tickMillis, TimeUnit.MILLISECONDS),
+                                self(), "tick", context().dispatcher(), self());
                     }
                 }).matchAny(any -> {
                     stash();
@@ -87,38 +128,245 @@ public class JsonRpcActorClient extends AbstractActorWithStash {
             ReceiveBuilder.match(Protocol.Invoke.class, invoke -> {
                 publish(invoke);
             }).match(Protocol.InvokeRabbitReply.class, reply -> {
-                Logger.debug("Reply: " + reply);
-                if(calls.containsKey(reply.properties.getCorrelationId())){
-                    final ActorConsumerHolder holder = calls.remove(reply.properties.getCorrelationId());
-                    final Protocol.InvokeReply invokeReply = handleReply(reply, holder);
-                    if(invokeReply.getReplyType() == Protocol.InvokeReplyType.ERROR) {
-                        holder.actor.tell(invokeReply.getError(), self());
-                    } else {
-                        holder.actor.tell(invokeReply.getResult(), self());
-                    }
+                if(Logger.isDebugEnabled()) Logger.debug("Reply: " + reply);
+                counters.received(reply.body.length);
+                final String type = reply.properties.getType();
+                if(Protocol.BATCH_TYPE.equals(type)) {
+                    handleBatchReply(reply);
+                } else if(Protocol.STREAM_CHUNK_TYPE.equals(type) || Protocol.STREAM_END_TYPE.equals(type)) {
+                    handleStreamReply(reply);
+                } else if(batches.containsKey(reply.properties.getCorrelationId())) {
+                    handleBatchError(reply);
+                } else {
+                    final ActorConsumerHolder holder = removeCall(reply.properties.getCorrelationId());
+                    if(holder != null) completeCall(holder, handleReply(reply, holder));
                 }
+            }).match(Protocol.PublishFailed.class, failed -> {
+                publishFailed(failed.ids, failed.cause);
+            }).match(Protocol.StreamCredit.class, credit -> {
+                final ActorConsumerHolder holder = credit.cancel ? removeCall(credit.id) : calls.get(credit.id);
+                if(holder == null || holder.streamControl == null) return;
+                streamControl(holder.streamControl, holder.streamId, credit.cancel ? Protocol.STREAM_CANCEL_TYPE : Protocol.STREAM_CREDIT_TYPE, credit.chunks);
+            }).matchEquals("flush", f -> {
+                flushBatch();
             }).matchEquals("tick", t -> {
-                final List<String> evict = new ArrayList<>();
-                calls.entrySet().stream().forEach(entry -> {
-                    Logger.debug("Duration: " + java.time.Duration.between(Instant.now(), entry.getValue().startTime).compareTo(timeoutDuration));
-                    if(java.time.Duration.between(Instant.now(), entry.getValue().startTime).compareTo(timeoutDuration) < 0) {
-                        evict.add(entry.getKey());
+                final long now = System.nanoTime();
+                timingWheel.expire(now, holder -> {
+                    if(holder.streamControl != null) {
+                        streamIdle(holder, now);
+                        return;
                     }
+                    removeCall(holder.replyId);
+                    final ProcedureMetrics metrics = metrics(holder);
+                    if(metrics != null) metrics.recordTimeout(now - holder.startTime);
+                    holder.reply(new TimeoutException(), self());
                 });
-                evict.stream().forEach(key -> {
-                    final ActorConsumerHolder holder = calls.remove(key);
-                    holder.actor.tell(new TimeoutException(), self());
-                });
+                hedgeWheel.expire(now, this::hedge);
             }).matchAny(any -> unhandled(any)).build();
 
+    private ActorConsumerHolder removeCall(String replyId) {
+        final ActorConsumerHolder holder = calls.remove(replyId);
+        if(holder != null) {
+            final long now = System.nanoTime();
+            if(replyId.equals(holder.hedgeId)) {
+                // The hedge answered first, the reply to the first request will find no call and be dropped
+                calls.remove(holder.replyId);
+                balancer.finished(holder.replica, -1, now);
+                balancer.finished(holder.hedgeReplica, now - holder.hedgedAt, now);
+                procedureMetrics[holder.procedure.getId()].recordHedgeWin();
+            } else {
+                if(holder.hedgeId != null) dropHedge(holder, now);
+                // A stream's duration says nothing about how fast its replica answers
+                balancer.finished(holder.replica, holder.invoke.stream == null ? now - holder.startTime : -1, now);
+            }
+            timingWheel.cancel(holder.timeout);
+            hedgeWheel.cancel(holder.hedge);
+            if(holder.coalesceKey != null) coalesced.remove(holder.coalesceKey, holder);
+            if(holder.batchId != null) {
+                final List<String> ids = batches.get(holder.batchId);
+                if(ids != null && ids.stream().noneMatch(calls::containsKey)) batches.remove(holder.batchId);
+            }
+            if(holder.procedure != null) counters.inFlight.decrement();
+        }
+        return holder;
+    }
+
+    /**
+     * Fails the calls of a message that could not be published, or was nacked.
+     */
+    private void publishFailed(List<String> ids, Throwable failure) {
+        final Exception cause = failure instanceof Exception ? (Exception) failure : new IOException(failure);
+        for(String id : ids) {
+            final ActorConsumerHolder hedged = calls.get(id);
+            if(hedged != null && id.equals(hedged.hedgeId)) {
+                // Only the hedge was lost, the first request may still be answered
+                balancer.failed(hedged.hedgeReplica, System.nanoTime());
+                dropHedge(hedged, System.nanoTime());
+                continue;
+            }
+            final ActorConsumerHolder holder = removeCall(id);
+            if(holder == null) continue;
+            balancer.failed(holder.replica, System.nanoTime());
+            final ProcedureMetrics metrics = metrics(holder);
+            if(metrics != null) metrics.recordCall(System.nanoTime() - holder.startTime, true);
+            holder.reply(cause, self());
+        }
+    }
+
+    private void dropHedge(ActorConsumerHolder holder, long now) {
+        calls.remove(holder.hedgeId);
+        balancer.finished(holder.hedgeReplica, -1, now);
+        holder.hedgeId = null;
+    }
+
+    /**
+     * Sends a late idempotent call once more, to another replica when there is one, if the hedge budget allows.
+     */
+    private void hedge(ActorConsumerHolder holder) {
+        holder.hedge = null;
+        if(calls.get(holder.replyId) != holder || !hedgePolicy.tryHedge()) return;
+        holder.hedgeId = holder.replyId + "h";
+        holder.hedgeReplica = balancer.chooseOther(holder.replica);
+        holder.hedgedAt = System.nanoTime();
+        balancer.started(holder.hedgeReplica);
+        calls.put(holder.hedgeId, holder);
+        procedureMetrics[holder.procedure.getId()].recordHedged();
+        try {
+            publish(createCall(holder.invoke, holder.procedure, holder.hedgeId), holder.hedgeReplica);
+        } catch (IOException e) {
+            Logger.error("Error sending hedged call", e);
+            dropHedge(holder, System.nanoTime());
+        }
+    }
+
+    private ProcedureMetrics metrics(ActorConsumerHolder holder) {
+        return holder.procedure != null ? procedureMetrics[holder.procedure.getId()] : null;
+    }
+
+    private void completeCall(ActorConsumerHolder holder, Protocol.InvokeReply invokeReply) {
+        final ProcedureMetrics metrics = metrics(holder);
+        if(metrics != null) metrics.recordCall(System.nanoTime() - holder.startTime, invokeReply.getReplyType() == Protocol.InvokeReplyType.ERROR);
+        if(invokeReply.getReplyType() == Protocol.InvokeReplyType.ERROR) {
+            holder.reply(invokeReply.getError(), self());
+        } else {
+            holder.reply(invokeReply.getResult(), self());
+        }
+    }
+
+    private void handleBatchReply(Protocol.InvokeRabbitReply reply) {
+        batches.remove(reply.properties.getCorrelationId());
+        final List<Protocol.InvokeReply> replies;
+        try {
+            final Codec replyCodec = Codecs.forContentType(reply.properties.getContentType());
+            replies = replyCodec.decodeBatchReply(link.body(reply), id -> {
+                final ActorConsumerHolder holder = calls.get(id);
+                return holder != null && holder.procedure != null ? holder.procedure.getReturnJavaType() : null;
+            });
+        } catch (Exception e) {
+            Logger.error("Error decoding batch reply", e);
+            return;
+        }
+        for(Protocol.InvokeReply invokeReply : replies) {
+            final ActorConsumerHolder holder = removeCall(invokeReply.getId());
+            if(holder == null) continue;
+            completeCall(holder, checkReply(holder, invokeReply));
+        }
+    }
+
+    /**
+     * A single error answering a whole batch, sent when the server could not read it: every call of the batch fails.
+     */
+    private void handleBatchError(Protocol.InvokeRabbitReply reply) {
+        final List<String> ids = batches.remove(reply.properties.getCorrelationId());
+        Exception error;
+        try {
+            final Protocol.InvokeReply invokeReply = Codecs.forContentType(reply.properties.getContentType()).decodeReply(link.body(reply), null);
+            error = invokeReply.getError() != null ? invokeReply.getError() : new IOException("Unexpected reply to batch " + reply.properties.getCorrelationId());
+        } catch (Exception e) {
+            Logger.error("Error decoding batch error reply", e);
+            error = e;
+        }
+        for(String id : ids) {
+            final ActorConsumerHolder holder = removeCall(id);
+            if(holder != null) completeCall(holder, new Protocol.InvokeReply(holder.invoke, Protocol.InvokeReplyType.ERROR, error, null, null));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handleStreamReply(Protocol.InvokeRabbitReply reply) {
+        final boolean end = Protocol.STREAM_END_TYPE.equals(reply.properties.getType());
+        final String id = reply.properties.getCorrelationId();
+        final ActorConsumerHolder holder = end ? removeCall(id) : calls.get(id);
+        final Map<String, Object> headers = reply.properties.getHeaders();
+        final Object streamId = headers != null ? headers.get(StreamSender.STREAM_ID_HEADER) : null;
+        if(holder == null || holder.invoke.stream == null) {
+            // Nobody reads this stream any more, stop the server sending it
+            if(!end && streamId != null) streamControl(reply.properties.getReplyTo(), streamId.toString(), Protocol.STREAM_CANCEL_TYPE, 0);
+            return;
+        }
+        if(end) {
+            completeCall(holder, handleReply(reply, holder));
+            return;
+        }
+        if(holder.streamControl == null) {
+            holder.streamControl = reply.properties.getReplyTo();
+            holder.streamId = streamId != null ? streamId.toString() : null;
+        }
+        // The stream may run for as long as it is read, past its start only the gaps between chunks are timed
+        timingWheel.cancel(holder.timeout);
+        holder.timeout = timingWheel.schedule(holder, System.nanoTime() + streamIdleNanos);
+        try {
+            final Codec replyCodec = Codecs.forContentType(reply.properties.getContentType());
+            final JavaType chunkType = replyCodec.mapper().getTypeFactory().constructCollectionType(List.class, holder.procedure.getReturnJavaType());
+            holder.invoke.stream.chunk((List<Object>) replyCodec.decodeReply(link.body(reply), chunkType).getResult());
+        } catch (Exception e) {
+            Logger.error("Error decoding stream chunk", e);
+            removeCall(id);
+            streamControl(holder.streamControl, holder.streamId, Protocol.STREAM_CANCEL_TYPE, 0);
+            holder.reply(e, self());
+        }
+    }
+
+    /**
+     * No chunk arrived for the idle timeout. Only a reader left waiting fails the stream, one that stopped
+     * requesting is applying back pressure.
+     */
+    private void streamIdle(ActorConsumerHolder holder, long now) {
+        if(!holder.invoke.stream.isWaiting()) {
+            holder.timeout = timingWheel.schedule(holder, now + streamIdleNanos);
+            return;
+        }
+        removeCall(holder.replyId);
+        streamControl(holder.streamControl, holder.streamId, Protocol.STREAM_CANCEL_TYPE, 0);
+        final ProcedureMetrics metrics = metrics(holder);
+        if(metrics != null) metrics.recordTimeout(now - holder.startTime);
+        holder.reply(new TimeoutException("No stream chunk for " + TimeUnit.NANOSECONDS.toMillis(streamIdleNanos) + " ms"), self());
+    }
+
+    private void streamControl(String controlAddress, String streamId, String type, int credit) {
+        final AMQP.BasicProperties.Builder props = new AMQP.BasicProperties.Builder().correlationId(streamId).type(type)
+                .headers(Collections.singletonMap(StreamSender.CREDIT_HEADER, credit));
+        try {
+            link.publish("", controlAddress, props, new byte[0]);
+        } catch (IOException e) {
+            Logger.error("Error sending stream credit", e);
+        }
+    }
+
     private Protocol.InvokeReply handleReply(Protocol.InvokeRabbitReply reply, ActorConsumerHolder holder) {
-        final JsonNode node = Json.parse(reply.body);
-        final Protocol.InvokeReply invokeReply = Json.fromJson(node, Protocol.InvokeReply.class);
-        final Protocol.Invoke invoke = holder.invoke;
-        return checkReply(invoke, invokeReply, node);
+        final Protocol.InvokeReply invokeReply;
+        try {
+            final Codec replyCodec = Codecs.forContentType(reply.properties.getContentType());
+            invokeReply = replyCodec.decodeReply(link.body(reply), holder.procedure != null ? holder.procedure.getReturnJavaType() : null);
+        } catch (Exception e) {
+            Logger.error("Error decoding reply", e);
+            return new Protocol.InvokeReply(holder.invoke, Protocol.InvokeReplyType.ERROR, e, null, null);
+        }
+        return checkReply(holder, invokeReply);
     }
 
-    private Protocol.InvokeReply checkReply(Protocol.Invoke invoke, Protocol.InvokeReply invokeReply, JsonNode node) {
+    private Protocol.InvokeReply checkReply(ActorConsumerHolder holder, Protocol.InvokeReply invokeReply) {
+        final Protocol.Invoke invoke = holder.invoke;
         if (invokeReply.getReplyType() == Protocol.InvokeReplyType.ERROR) {
             Logger.error("checkReply error", invokeReply.getError());
             return invokeReply;
@@ -126,75 +374,250 @@ public class JsonRpcActorClient extends AbstractActorWithStash {
         if(invokeReply.getReplyType() == Protocol.InvokeReplyType.SERVICE_DESCRIPTOR) {
             return invokeReply;
         } else {
-            Object result;
-            try {
-                result = getObjectResult(invoke, invokeReply.getResult());
-            } catch (Exception e) {
-                Logger.error("Error casting reply to object", e);
-                return new Protocol.InvokeReply(invoke, Protocol.InvokeReplyType.ERROR, e, null, null);
-            }
+            final Object result = getObjectResult(holder.procedure, invokeReply.getResult());
             return new Protocol.InvokeReply(invoke, Protocol.InvokeReplyType.RESULT, null, null, result);
         }
     }
 
-    private Object getObjectResult(Protocol.Invoke invoke, Object object) throws IOException, ClassNotFoundException {
-        final String className = getMethodReturnClassName(invoke);
-        if("java.lang.Void".equalsIgnoreCase(className)) return new Protocol.NullObject();
-        final JavaType javaType = getJavaType(className);
-        return Json.mapper().convertValue(object, javaType);
+    private Object getObjectResult(Procedure procedure, Object object) {
+        if(object == null || procedure.getReturnJavaType().getRawClass() == Void.class) return new Protocol.NullObject();
+        return object;
+    }
+
+    @Override
+    public void postStop() {
+        if(ticker != null) ticker.cancel();
+        if(batchFlush != null) batchFlush.cancel();
+        if(link != null) link.close();
     }
 
-    private JavaType getJavaType(String fullClassName) throws ClassNotFoundException {
-        if(fullClassName.contains("<")) {
-            final String genericClassName = fullClassName.substring(0, fullClassName.indexOf("<"));
-            final String className = fullClassName.substring(fullClassName.indexOf("<") + 1, fullClassName.length() - 1);
-            final Class<?> genericClazz = Class.forName(genericClassName);
-            final Class<?> clazz = Class.forName(className);
-            return Json.mapper().getTypeFactory().constructParametricType(genericClazz, clazz);
+    private Protocol.RabbitMessage createCall(Protocol.Invoke invoke, Procedure proc, String replyId)
+    {
+        if(proc == null) {
+            return new Protocol.RabbitMessage(replyId, invoke.method, new Object[0], null);
         } else {
-            return Json.mapper().getTypeFactory().constructType(Class.forName(fullClassName));
+            return new Protocol.RabbitMessage(replyId, invoke.method, (invoke.args == null) ? new Object[0] : invoke.args, proc.getId());
         }
     }
 
-    private String getMethodReturnClassName(Protocol.Invoke invoke) {
-        final Procedure proc = jsonRpcService.findProcedure(serviceDescriptor, invoke.method, invoke.args).get();
-        return proc.getReturnType();
+    private void publish(Protocol.Invoke invoke) {
+        if(Logger.isDebugEnabled()) Logger.debug("publish: " + invoke);
+        Procedure proc = null;
+        if(!invoke.method.startsWith("system.")) {
+            proc = dispatchTable.resolve(invoke.method, invoke.args);
+            if(proc == null) {
+                if(invoke.stream != null) invoke.stream.reply(new NoSuchMethodException(invoke.method));
+                else sender().tell(new NoSuchMethodException(invoke.method), self());
+                return;
+            }
+        }
+        if(invoke.stream != null && invoke.stream.isCancelled()) return;
+        if(invoke.oneWay && proc != null) {
+            publishOneWay(invoke, proc);
+            return;
+        }
+        CallKey key = null;
+        if(invoke.coalesce && proc != null) {
+            // Identical calls already in flight take the same reply instead of sending another request
+            try {
+                key = new CallKey(proc.getId(), keyWriter.writeValueAsBytes(invoke.args));
+            } catch (IOException e) {
+                // Arguments Jackson cannot write fail their own call, not the client
+                sender().tell(e, self());
+                return;
+            }
+            final ActorConsumerHolder inFlight = coalesced.get(key);
+            if(inFlight != null) {
+                inFlight.follow(sender());
+                procedureMetrics[proc.getId()].recordCoalesced();
+                return;
+            }
+        }
+        correlationId++;
+        final String replyId = "" + correlationId;
+        final Protocol.RabbitMessage message = createCall(invoke, proc, replyId);
+        final ActorConsumerHolder holder = new ActorConsumerHolder(invoke, proc, sender(), replyId);
+        final boolean batched = batchMaxSize > 1 && proc != null && invoke.stream == null;
+        // A batch goes to a single replica, the one picked for its first call
+        holder.replica = batched && !batch.isEmpty() ? batchReplica : balancer.choose();
+        if(batched && batch.isEmpty()) batchReplica = holder.replica;
+        balancer.started(holder.replica);
+        calls.put(replyId, holder);
+        if(key != null) {
+            holder.coalesceKey = key;
+            coalesced.put(key, holder);
+        }
+        if(proc != null) counters.inFlight.increment();
+        if(invoke.stream != null) invoke.stream.bind(self(), replyId);
+        final int callTimeout = invoke.timeout > 0 ? invoke.timeout : timeout;
+        if(callTimeout > 0 && !invoke.method.startsWith("system.")) {
+            holder.timeout = timingWheel.schedule(holder, holder.startTime + TimeUnit.MILLISECONDS.toNanos(callTimeout));
+            holder.deadline = System.currentTimeMillis() + callTimeout;
+        }
+        if(invoke.idempotent && proc != null && invoke.stream == null) {
+            hedgePolicy.called();
+            final long hedgeDelay = hedgePolicy.delayNanos(procedureMetrics[proc.getId()], holder.startTime);
+            // No point hedging a call that times out before its hedge would be sent
+            if(hedgeDelay >= 0 && (holder.timeout == null || hedgeDelay < TimeUnit.MILLISECONDS.toNanos(callTimeout))) {
+                holder.hedge = hedgeWheel.schedule(holder, holder.startTime + hedgeDelay);
+            }
+        }
+        if(batched) {
+            batch.add(message);
+            if(batch.size() >= batchMaxSize) {
+                flushBatch();
+            } else if(batch.size() == 1) {
+                batchFlush = context().system().scheduler().scheduleOnce(Duration.create(batchWindowMillis, TimeUnit.MILLISECONDS),
+                        self(), "flush", context().dispatcher(), self());
+            }
+        } else {
+            try {
+                publish(message, holder.replica);
+            } catch (IOException e) {
+                Logger.error("Error publishing call", e);
+                publishFailed(Collections.singletonList(replyId), e);
+            }
+        }
     }
 
-    @Override
-    public void postStop() {
-        channel.ifPresent(c -> {
-            try {
-                c.close();
-                connection.get().close();
-            } catch (Exception e) {
-                Logger.error(e.toString());
+    private void publish(Protocol.RabbitMessage message, int replica) throws IOException {
+        final AMQP.BasicProperties.Builder props = new AMQP.BasicProperties.Builder().correlationId(message.getId()).replyTo(link.replyTo())
+                .contentType(codec.contentType());
+        basicPublish(props, codec.encodeRequest(message), Collections.singletonList(message.getId()), replica);
+    }
+
+    private void flushBatch() {
+        if(batchFlush != null) {
+            batchFlush.cancel();
+            batchFlush = null;
+        }
+        if(batch.isEmpty()) return;
+        final List<String> ids = new ArrayList<>(batch.size());
+        batch.forEach(message -> ids.add(message.getId()));
+        try {
+            if(batch.size() == 1) {
+                publish(batch.get(0), batchReplica);
+            } else {
+                batchId++;
+                final String correlationId = "batch-" + batchId;
+                final AMQP.BasicProperties.Builder props = new AMQP.BasicProperties.Builder().correlationId(correlationId).replyTo(link.replyTo())
+                        .contentType(codec.contentType()).type(Protocol.BATCH_TYPE);
+                // Kept until the batch is answered, so an error answering it as a whole reaches every call
+                batches.put(correlationId, ids);
+                for(String id : ids) {
+                    final ActorConsumerHolder holder = calls.get(id);
+                    if(holder != null) holder.batchId = correlationId;
+                }
+                basicPublish(props, codec.encodeBatchRequest(batch), ids, batchReplica);
             }
+        } catch (IOException e) {
+            Logger.error("Error publishing batch", e);
+            publishFailed(ids, e);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Publishes a call nobody waits a reply for: no reply address, correlation entry or timeout. The caller is
+     * answered as soon as the transport accepted the request.
+     */
+    private void publishOneWay(Protocol.Invoke invoke, Procedure proc) {
+        final ActorRef caller = sender();
+        final ProcedureMetrics metrics = procedureMetrics[proc.getId()];
+        final long start = System.nanoTime();
+        try {
+            final AMQP.BasicProperties.Builder props = new AMQP.BasicProperties.Builder().contentType(codec.contentType());
+            if(invoke.priority > 0) props.priority(invoke.priority);
+            final byte[] body = codec.encodeRequest(createCall(invoke, proc, null));
+            // No deadline either, with nobody waiting the request stays worth executing however late
+            stamp(props, 0);
+            counters.published(body.length);
+            link.publish(exchange, balancer.routingKey(balancer.choose()), props, body).whenComplete((v, t) -> {
+                metrics.recordCall(System.nanoTime() - start, t != null);
+                caller.tell(t == null ? new Protocol.NullObject() : t instanceof Exception ? t : new IOException(t), ActorRef.noSender());
+            });
+        } catch (IOException e) {
+            metrics.recordCall(System.nanoTime() - start, true);
+            caller.tell(e, self());
+        }
+    }
+
+    private void basicPublish(AMQP.BasicProperties.Builder props, byte[] body, List<String> ids, int replica) throws IOException {
+        stamp(props, deadline(ids));
+        final int priority = priority(ids);
+        if(priority > 0) props.priority(priority);
+        counters.published(body.length);
+        final CompletableFuture<Void> published = link.publish(exchange, balancer.routingKey(replica), props, body).toCompletableFuture();
+        if(published.isDone() && !published.isCompletedExceptionally()) return;
+        // A nack fails the callers right away instead of leaving them to time out
+        final ActorRef self = self();
+        published.whenComplete((v, t) -> {
+            if(t != null) self.tell(new Protocol.PublishFailed(ids, t), ActorRef.noSender());
         });
     }
 
-    private Protocol.RabbitMessage createCall(Protocol.Invoke invoke)
-    {
-        if(invoke.method.startsWith("system.")) {
-            return new Protocol.RabbitMessage(invoke.method, new Object[0], null);
+    private static void stamp(AMQP.BasicProperties.Builder props, long deadline) {
+        final long now = System.currentTimeMillis();
+        if(deadline > 0) {
+            // The broker discards the request once nobody waits for it, the header lets the server skip it as well
+            props.expiration(Long.toString(Math.max(1, deadline - now)));
+            final Map<String, Object> headers = new HashMap<>(4);
+            headers.put(SENT_AT_HEADER, now);
+            headers.put(DEADLINE_HEADER, deadline);
+            props.headers(headers);
         } else {
-            final Procedure proc = jsonRpcService.findProcedure(serviceDescriptor, invoke.method, invoke.args).get();
-            final int methodId = proc.getId();
-            return new Protocol.RabbitMessage(invoke.method, (invoke.args == null) ? new Object[0] : invoke.args, methodId);
+            props.headers(Collections.singletonMap(SENT_AT_HEADER, now));
         }
     }
 
-    private void publish(Protocol.Invoke invoke) throws IOException {
-        Logger.debug("publish: " + invoke);
-        final Protocol.RabbitMessage message = createCall(invoke);
-        correlationId++;
-        final String replyId = "" + correlationId;
-        final ActorConsumer consumer = new ActorConsumer(channel.get(), self());
-        final ActorConsumerHolder holder = new ActorConsumerHolder(invoke, sender(), consumer, replyId);
-        calls.put(replyId, holder);
-        final String callbackQueueName = channel.get().queueDeclare().getQueue();
-        final AMQP.BasicProperties props = new AMQP.BasicProperties.Builder().correlationId(replyId).replyTo(callbackQueueName).build();
-        channel.get().basicConsume(callbackQueueName, true, consumer);
-        channel.get().basicPublish(exchange, routingKey, props, Json.toJson(message).toString().getBytes());
+    /**
+     * The latest deadline of the calls in one message, or 0 when any of them may wait forever.
+     */
+    private long deadline(List<String> ids) {
+        long deadline = 0;
+        for(String id : ids) {
+            final ActorConsumerHolder holder = calls.get(id);
+            if(holder == null || holder.deadline == 0) return 0;
+            deadline = Math.max(deadline, holder.deadline);
+        }
+        return deadline;
+    }
+
+    /**
+     * The highest priority of the calls in one message, a batch must not hold back any of them.
+     */
+    private int priority(List<String> ids) {
+        int priority = 0;
+        for(String id : ids) {
+            final ActorConsumerHolder holder = calls.get(id);
+            if(holder != null) priority = Math.max(priority, holder.invoke.priority);
+        }
+        return priority;
+    }
+
+    private static class CallKey {
+        private final int procedureId;
+        private final byte[] args;
+        private final int hash;
+
+        private CallKey(int procedureId, byte[] args) {
+            this.procedureId = procedureId;
+            this.args = args;
+            this.hash = 31 * procedureId + Arrays.hashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final CallKey key = (CallKey) o;
+            return procedureId == key.procedureId && Arrays.equals(args, key.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
     }
 }
\ No newline at end of file
@@ -1,174 +1,450 @@
 package jsonrpc;
 
 import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
 import akka.actor.Props;
 import akka.japi.pf.ReceiveBuilder;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import akka.stream.javadsl.AsPublisher;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
 import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.rabbitmq.client.AMQP;
-import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.Connection;
+import jsonrpc.codec.Codec;
+import jsonrpc.codec.Codecs;
+import jsonrpc.metrics.ProcedureMetrics;
+import jsonrpc.metrics.RpcMetrics;
 import jsonrpc.models.Procedure;
 import jsonrpc.models.Protocol;
 import jsonrpc.models.ServiceDescriptor;
+import jsonrpc.transport.Transport;
+import org.reactivestreams.Publisher;
 import play.Logger;
-import play.libs.Json;
+import scala.concurrent.ExecutionContextExecutor;
 
 import java.io.IOException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Type;
+import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class JsonRpcActorServer extends AbstractActor {
-    private final RabbitConnection rabbitConnection;
+    private static final Object STREAMED = new Object();
+    private static final Protocol.InvokeReply STREAMED_REPLY = new Protocol.InvokeReply(null, Protocol.InvokeReplyType.RESULT, null, null, null);
+
     private final String queueName;
     private final Class<?> interfaceClass;
     private final Object interfaceInstance;
     private final ServiceDescriptor serviceDescriptor;
+    private final DispatchTable dispatchTable;
     private final JsonRpcService jsonRpcService;
+    private final RpcMetrics.Counters counters;
+    private final ProcedureMetrics[] procedureMetrics;
+    private final boolean[] idempotent;
+    // Requests that may be executed again if their reply is lost, only touched by this actor
+    private final Set<Protocol.InvokeRabbitReply> repeatable = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final int streamChunkSize;
+    private final int streamInitialCredit;
+    private final Map<String, StreamSender> streams = new ConcurrentHashMap<>();
+    private final AtomicLong nextStreamId = new AtomicLong();
+    private final Materializer materializer;
+    // Delivery tags belong to this instance's channel, replies settling them must come from this instance too
+    private final Object incarnation = new Object();
+    private final ExecutionContextExecutor blockingDispatcher;
+    private final int concurrency;
+    private final PriorityQueue<Pending> pending = new PriorityQueue<>();
+    private int executing;
+    private long arrivals;
 
-    private Optional<Connection> connection;
-    private Optional<Channel> channel;
-    private Optional<ActorConsumer> actorConsumer;
+    private Transport.ServerLink link;
 
 
 
-    public static Props props(RabbitConnection rabbitConnection, String queueName, Class<?> interfaceClass, Object interfaceInstance, JsonRpcService jsonRpcService) {
-        return Props.create(JsonRpcActorServer.class, rabbitConnection, queueName, interfaceClass, interfaceInstance, jsonRpcService);
+    public static Props props(Transport transport, RabbitConfig rabbitConfig, String queueName, Class<?> interfaceClass, Object interfaceInstance, JsonRpcService jsonRpcService, RpcMetrics rpcMetrics) {
+        return Props.create(JsonRpcActorServer.class, transport, rabbitConfig, queueName, interfaceClass, interfaceInstance, jsonRpcService, rpcMetrics);
     }
 
-    public JsonRpcActorServer(RabbitConnection rabbitConnection, String queueName, Class<?> interfaceClass, Object interfaceInstance, JsonRpcService jsonRpcService) {
-        this.rabbitConnection = rabbitConnection;
+    public JsonRpcActorServer(Transport transport, RabbitConfig rabbitConfig, String queueName, Class<?> interfaceClass, Object interfaceInstance, JsonRpcService jsonRpcService, RpcMetrics rpcMetrics) {
         this.queueName = queueName;
         this.interfaceClass = interfaceClass;
         this.interfaceInstance = interfaceInstance;
         this.jsonRpcService = jsonRpcService;
+        this.counters = rpcMetrics.counters(RpcMetrics.Side.SERVER);
+        this.streamChunkSize = rabbitConfig.getStreamChunkSize();
+        this.streamInitialCredit = rabbitConfig.getStreamInitialCredit();
+        this.materializer = ActorMaterializer.create(context());
+        this.blockingDispatcher = blockingDispatcher(rabbitConfig.getServerDispatcher());
+        this.concurrency = rabbitConfig.getServerConcurrency();
 
         try {
-            connection = Optional.of(rabbitConnection.getConnection());
-            channel = Optional.of(connection.get().createChannel());
-            actorConsumer = Optional.of(new ActorConsumer(channel.get(), self()));
-            channel.get().basicConsume(queueName, true, actorConsumer.get());
+            link = transport.bindServer(queueName, self(), rabbitConfig.getServerPrefetch());
         } catch (Exception e) {
-            Logger.error("Error getting channel", e);
+            Logger.error("Error binding server to " + queueName, e);
         }
 
 
-        serviceDescriptor = jsonRpcService.createServiceDescriptor(interfaceClass);
+        serviceDescriptor = jsonRpcService.getServiceDescriptor(interfaceClass);
+        dispatchTable = jsonRpcService.getDispatchTable(interfaceClass);
+        procedureMetrics = rpcMetrics.procedures(RpcMetrics.Side.SERVER, serviceDescriptor);
+        idempotent = new boolean[procedureMetrics.length];
+        for(Procedure procedure : serviceDescriptor.getProcedures()) {
+            idempotent[procedure.getId()] = procedure.getInternalMethod().isAnnotationPresent(Idempotent.class);
+        }
 
         receive(
                 ReceiveBuilder.match(Protocol.InvokeRabbitReply.class, invokeRabbitReply -> {
-                    Logger.debug("Server request: " + invokeRabbitReply);
-                    handleRequest(invokeRabbitReply);
+                    if(Logger.isDebugEnabled()) Logger.debug("Server request: " + invokeRabbitReply);
+                    counters.received(invokeRabbitReply.body.length);
+                    if(isStreamControl(invokeRabbitReply)) {
+                        streamControl(invokeRabbitReply);
+                    } else if(isExpired(invokeRabbitReply)) {
+                        drop(invokeRabbitReply);
+                    } else if(concurrency > 0 && executing >= concurrency) {
+                        pending.add(new Pending(invokeRabbitReply, arrivals++));
+                    } else {
+                        execute(invokeRabbitReply);
+                    }
+                }).match(Executed.class, executed -> executed.incarnation == incarnation, executed -> {
+                    executing--;
+                    while(executing < concurrency && !pending.isEmpty()) {
+                        final Protocol.InvokeRabbitReply next = pending.poll().request;
+                        // The deadline may have passed while the request was buffered
+                        if(isExpired(next)) drop(next);
+                        else execute(next);
+                    }
+                }).match(Protocol.ServerReply.class, serverReply -> serverReply.incarnation == incarnation, serverReply -> {
+                    replyToClient(serverReply);
+                }).match(Protocol.ReplySettled.class, settled -> settled.incarnation == incarnation, settled -> {
+                    settle(settled.request, settled.failure);
+                }).matchAny(any -> {
+                    if(any instanceof Protocol.ServerReply || any instanceof Protocol.ReplySettled || any instanceof Executed) {
+                        // Left over from before a restart, the broker redelivers the requests of the closed channel
+                        if(Logger.isDebugEnabled()) Logger.debug("Dropping message of a previous server instance: " + any);
+                    } else {
+                        unhandled(any);
+                    }
                 }).build()
         );
     }
 
-    private void handleRequest(Protocol.InvokeRabbitReply invokeRabbitReply) throws IOException {
-        final JsonNode root = Json.parse(invokeRabbitReply.body);
-        final Protocol.RabbitMessage message = Json.fromJson(root, Protocol.RabbitMessage.class);
-        final Protocol.InvokeReply result = doCall(message);
-        replyToClient(invokeRabbitReply, result);
+    /**
+     * True once the caller has given up on the request. Assumes client and server clocks roughly agree.
+     */
+    private static boolean isExpired(Protocol.InvokeRabbitReply request) {
+        final Map<String, Object> headers = request.properties.getHeaders();
+        final Object deadline = headers != null ? headers.get(JsonRpcActorClient.DEADLINE_HEADER) : null;
+        return deadline instanceof Number && ((Number) deadline).longValue() < System.currentTimeMillis();
     }
 
-    private void replyToClient(Protocol.InvokeRabbitReply invokeRabbitReply, Protocol.InvokeReply result) throws IOException {
-        final String correlationId = invokeRabbitReply.properties.getCorrelationId();
-        final String replyTo = invokeRabbitReply.properties.getReplyTo();
-        final AMQP.BasicProperties replyProperties = new AMQP.BasicProperties.Builder().correlationId(correlationId).build();
-        final byte[] replyBody = Json.toJson(result).toString().getBytes();
-        Logger.debug("Server side about to reply: " + new String(replyBody));
-        channel.get().basicPublish("", replyTo, replyProperties, replyBody);
+    private void drop(Protocol.InvokeRabbitReply request) {
+        if(Logger.isDebugEnabled()) Logger.debug("Dropping expired request: " + request);
+        counters.expired.increment();
+        try {
+            link.ack(request);
+        } catch (IOException e) {
+            Logger.error("Error acknowledging request", e);
+        }
     }
 
-    private Protocol.InvokeReply doCall(Protocol.RabbitMessage message) {
-        if (message.getMethod().equals("system.describe")) {
-            return new Protocol.InvokeReply(null, Protocol.InvokeReplyType.SERVICE_DESCRIPTOR, null, serviceDescriptor, null);
-        } else if (message.getMethod().startsWith("system.")) {
-            return new Protocol.InvokeReply(null, Protocol.InvokeReplyType.ERROR, new IllegalAccessException("System methods forbidden"), null, null);
+    private void execute(Protocol.InvokeRabbitReply request) {
+        executing++;
+        final ActorRef self = self();
+        // Completed once, when the request finished executing or its stream started, whichever comes first
+        final CompletableFuture<Void> slot = new CompletableFuture<>();
+        slot.thenRun(() -> self.tell(new Executed(incarnation), ActorRef.noSender()));
+        handleRequest(request, slot).whenComplete((r, t) -> slot.complete(null));
+    }
+
+    /**
+     * Handles a request, completing once its calls have finished executing. {@code slot} is completed early when a
+     * call starts a stream.
+     */
+    private CompletionStage<?> handleRequest(Protocol.InvokeRabbitReply invokeRabbitReply, CompletableFuture<Void> slot) {
+        if(Protocol.BATCH_TYPE.equals(invokeRabbitReply.properties.getType())) {
+            return handleBatch(invokeRabbitReply, slot);
+        }
+        final Protocol.RabbitMessage message;
+        try {
+            final Codec codec = Codecs.forContentType(invokeRabbitReply.properties.getContentType());
+            message = codec.decodeRequest(link.body(invokeRabbitReply), this::parameterTypes);
+        } catch (Exception e) {
+            replyToClient(new Protocol.ServerReply(incarnation, invokeRabbitReply, errorReply(new IllegalArgumentException("Malformed request", e))));
+            return CompletableFuture.completedFuture(null);
+        }
+        if(isIdempotent(message)) repeatable.add(invokeRabbitReply);
+        final ActorRef self = self();
+        return call(message, invokeRabbitReply, slot).thenAccept(reply -> {
+            // A streamed result has been answered chunk by chunk already, and one-way calls want no answer
+            if(reply == STREAMED_REPLY || isOneWay(invokeRabbitReply)) self.tell(new Protocol.ReplySettled(incarnation, invokeRabbitReply, null), ActorRef.noSender());
+            else self.tell(new Protocol.ServerReply(incarnation, invokeRabbitReply, reply), ActorRef.noSender());
+        });
+    }
+
+    private static boolean isOneWay(Protocol.InvokeRabbitReply request) {
+        return request.properties.getReplyTo() == null;
+    }
+
+    private static boolean isStreamControl(Protocol.InvokeRabbitReply message) {
+        final String type = message.properties.getType();
+        return Protocol.STREAM_CREDIT_TYPE.equals(type) || Protocol.STREAM_CANCEL_TYPE.equals(type);
+    }
+
+    private void streamControl(Protocol.InvokeRabbitReply message) {
+        final StreamSender sender = streams.get(message.properties.getCorrelationId());
+        if(sender == null) return;
+        if(Protocol.STREAM_CANCEL_TYPE.equals(message.properties.getType())) {
+            sender.cancel();
         } else {
-            Object result;
-            try {
-                final Optional<Method> m = matchingMethod(message.getMethodId());
-                if(!m.isPresent()) return new Protocol.InvokeReply(null, Protocol.InvokeReplyType.ERROR, new IllegalArgumentException("Method not found"), null, null);
-                final Object[] params = getObjectParams(m.get(), message.getArgs());
-                CompletableFuture<Object> futureResult = (CompletableFuture<Object>)m.get().invoke(interfaceInstance, params);
-                result = futureResult.get();
-                Logger.debug("Server method result: " + result);
-            } catch (Throwable t) {
-                return new Protocol.InvokeReply(null, Protocol.InvokeReplyType.ERROR, new Exception("Internal Server Error", t), null, null);
+            final Map<String, Object> headers = message.properties.getHeaders();
+            final Object credit = headers != null ? headers.get(StreamSender.CREDIT_HEADER) : null;
+            if(credit instanceof Number) sender.credit(((Number) credit).intValue());
+        }
+    }
+
+    /**
+     * Starts sending the elements of a procedure's stream, completing with {@link #STREAMED} once it ended. The stream
+     * is paced by its reader's credit rather than by the server, so it gives its execution slot back once started.
+     */
+    @SuppressWarnings("unchecked")
+    private CompletionStage<Object> stream(Object result, Protocol.InvokeRabbitReply request, CompletableFuture<Void> slot) {
+        final String streamId = Long.toString(nextStreamId.incrementAndGet());
+        final StreamSender sender = new StreamSender(streamId, link, request, replyCodec(request), counters, streamChunkSize, streamInitialCredit);
+        streams.put(streamId, sender);
+        final Publisher<Object> publisher = result instanceof Source
+                ? ((Source<Object, ?>) result).runWith(Sink.asPublisher(AsPublisher.WITHOUT_FANOUT), materializer)
+                : (Publisher<Object>) result;
+        publisher.subscribe(sender);
+        slot.complete(null);
+        return sender.published().handle((v, t) -> {
+            streams.remove(streamId);
+            if(t != null) Logger.error("Error ending stream " + streamId, t);
+            return STREAMED;
+        });
+    }
+
+    private CompletionStage<?> handleBatch(Protocol.InvokeRabbitReply invokeRabbitReply, CompletableFuture<Void> slot) {
+        final List<Protocol.RabbitMessage> messages;
+        try {
+            final Codec codec = Codecs.forContentType(invokeRabbitReply.properties.getContentType());
+            messages = codec.decodeBatchRequest(link.body(invokeRabbitReply), this::parameterTypes);
+        } catch (Exception e) {
+            replyToClient(new Protocol.ServerReply(incarnation, invokeRabbitReply, errorReply(new IllegalArgumentException("Malformed batch request", e))));
+            return CompletableFuture.completedFuture(null);
+        }
+        if(messages.stream().allMatch(this::isIdempotent)) repeatable.add(invokeRabbitReply);
+        final List<CompletableFuture<Protocol.InvokeReply>> futureReplies = new ArrayList<>(messages.size());
+        for(Protocol.RabbitMessage message : messages) {
+            futureReplies.add(call(message, invokeRabbitReply, slot).thenApply(reply -> reply.withId(message.getId())).toCompletableFuture());
+        }
+        final ActorRef self = self();
+        return CompletableFuture.allOf(futureReplies.toArray(new CompletableFuture[futureReplies.size()])).thenRun(() -> {
+            final List<Protocol.InvokeReply> replies = new ArrayList<>(futureReplies.size());
+            futureReplies.forEach(futureReply -> replies.add(futureReply.join()));
+            self.tell(new Protocol.ServerReply(incarnation, invokeRabbitReply, replies), ActorRef.noSender());
+        });
+    }
+
+    private void replyToClient(Protocol.ServerReply serverReply) {
+        final Protocol.InvokeRabbitReply invokeRabbitReply = serverReply.request;
+        if(isOneWay(invokeRabbitReply)) {
+            settle(invokeRabbitReply, null);
+            return;
+        }
+        try {
+            final String correlationId = invokeRabbitReply.properties.getCorrelationId();
+            final Codec codec = replyCodec(invokeRabbitReply);
+            final AMQP.BasicProperties.Builder replyProperties = new AMQP.BasicProperties.Builder().correlationId(correlationId)
+                    .contentType(codec.contentType());
+            final byte[] replyBody;
+            if(serverReply.batch != null) {
+                replyProperties.type(Protocol.BATCH_TYPE);
+                replyBody = codec.encodeBatchReply(serverReply.batch);
+            } else {
+                replyBody = codec.encodeReply(serverReply.reply);
             }
-            return new Protocol.InvokeReply(null, Protocol.InvokeReplyType.RESULT, null, null, result);
-        }
-    }
-
-    private Optional<Method> matchingMethod(int id) {
-        final Optional<Procedure> optionalProcedure = jsonRpcService.findProcedure(serviceDescriptor, id);
-        if(!optionalProcedure.isPresent()) return Optional.empty();
-    return Optional.of(optionalProcedure.get().getInternalMethod());
-    }
-
-    private Object[] getObjectParams(Method method, Object[] params) throws IOException, ClassNotFoundException {
-        List<Object> list = new ArrayList<>();
-        int i = 0;
-        final Type[] types = method.getGenericParameterTypes();
-        for(Object param : params) {
-            String className = types[i].getTypeName();
-            if (className.contains("<")) {
-                final String genericClassName = className.substring(0, className.indexOf("<"));
-                final String typeName = className.substring(className.indexOf("<") + 1, className.length() - 1);
-                final Class<?> genericClazz = getClassForName(genericClassName);
-                final Class<?> clazz = getClassForName(typeName);
-                final JavaType javaType = Json.mapper().getTypeFactory().constructParametricType(genericClazz, clazz);
-                final Object obj = Json.mapper().convertValue(param, javaType);
-                list.add(obj);
+            if(Logger.isDebugEnabled()) Logger.debug("Server side about to reply: " + serverReply);
+            counters.published(replyBody.length);
+            final CompletableFuture<Void> published = link.reply(invokeRabbitReply, replyProperties, replyBody).toCompletableFuture();
+            if(published.isDone()) {
+                settle(invokeRabbitReply, published.handle((v, t) -> t).join());
             } else {
-                final Class<?> clazz = getClassForName(className);
-                final Object obj = Json.mapper().convertValue(param, clazz);
-                list.add(obj);
+                // Acknowledge the request only once the broker has confirmed the reply
+                final ActorRef self = self();
+                published.whenComplete((v, t) -> self.tell(new Protocol.ReplySettled(incarnation, invokeRabbitReply, t), ActorRef.noSender()));
             }
-            i++;
-        }
-        return list.toArray();
-    }
-
-    private Class<?> getClassForName(String className) throws ClassNotFoundException {
-        String temp;
-        if (className.contains("<")) temp = className.substring(0, className.indexOf("<"));
-        else temp = className;
-        switch (temp.toLowerCase()) {
-            case "byte":
-                return byte.class;
-            case "short":
-                return short.class;
-            case "int":
-                return int.class;
-            case "long":
-                return long.class;
-            case "float":
-                return float.class;
-            case "double":
-                return double.class;
-            case "char":
-                return char.class;
-            case "boolean":
-                return boolean.class;
-            default:
-                return Class.forName(temp);
+            return;
+        } catch (Exception e) {
+            Logger.error("Error replying to client", e);
         }
+        settle(invokeRabbitReply, null);
     }
 
-    @Override
-    public void postStop() throws Exception {
-        channel.ifPresent(c -> {
-            try {
-                c.close();
-                connection.get().close();
-            } catch (Exception e) {
-                Logger.error(e.toString());
+    private boolean isIdempotent(Protocol.RabbitMessage message) {
+        final Integer methodId = message.getMethodId();
+        return methodId != null && methodId >= 0 && methodId < idempotent.length && idempotent[methodId];
+    }
+
+    private void settle(Protocol.InvokeRabbitReply request, Throwable failure) {
+        final boolean repeat = repeatable.remove(request);
+        try {
+            if(failure == null) {
+                link.ack(request);
+            } else if(repeat) {
+                // A nacked reply gets its request redelivered once, to be executed and answered again
+                Logger.error("Reply was not confirmed", failure);
+                link.reject(request, !request.envelope.isRedeliver());
+            } else {
+                // Executing it again could repeat its effects, the caller times out instead
+                Logger.error("Reply to " + request.properties.getCorrelationId() + " was lost, its request is not @Idempotent and is not retried", failure);
+                link.ack(request);
             }
+        } catch (IOException e) {
+            Logger.error("Error acknowledging request", e);
+        }
+    }
+
+    private Codec replyCodec(Protocol.InvokeRabbitReply invokeRabbitReply) {
+        try {
+            return Codecs.forContentType(invokeRabbitReply.properties.getContentType());
+        } catch (IllegalArgumentException e) {
+            return Codecs.JSON;
+        }
+    }
+
+    private JavaType[] parameterTypes(int methodId) {
+        final Procedure procedure = dispatchTable.procedure(methodId);
+        return procedure != null ? procedure.getParameterJavaTypes() : null;
+    }
+
+    private CompletionStage<Protocol.InvokeReply> call(Protocol.RabbitMessage message, Protocol.InvokeRabbitReply request, CompletableFuture<Void> slot) {
+        final int methodId = message.getMethodId() != null ? message.getMethodId() : -1;
+        final ProcedureMetrics metrics = methodId >= 0 && methodId < procedureMetrics.length ? procedureMetrics[methodId] : null;
+        counters.inFlight.increment();
+        CompletionStage<Protocol.InvokeReply> reply;
+        try {
+            reply = doCall(message, request, metrics, slot).handle((r, t) -> t == null ? r : errorReply(new Exception("Internal Server Error", t)));
+        } catch (Exception e) {
+            reply = CompletableFuture.completedFuture(errorReply(new Exception("Internal Server Error", e)));
+        }
+        return reply.thenApply(r -> {
+            counters.inFlight.decrement();
+            if(metrics != null) metrics.recordCall(System.nanoTime() - request.receivedAt, r.getReplyType() == Protocol.InvokeReplyType.ERROR);
+            return r;
         });
     }
+
+    /**
+     * Time since the client published the request, or since it was received when the client did not say.
+     */
+    private static long queueWait(Protocol.InvokeRabbitReply request, long now) {
+        final Map<String, Object> headers = request.properties.getHeaders();
+        final Object sentAt = headers != null ? headers.get(JsonRpcActorClient.SENT_AT_HEADER) : null;
+        if(sentAt instanceof Number) {
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - ((Number) sentAt).longValue()));
+        }
+        return now - request.receivedAt;
+    }
+
+    private static Protocol.InvokeReply errorReply(Exception e) {
+        return new Protocol.InvokeReply(null, Protocol.InvokeReplyType.ERROR, e, null, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletionStage<Protocol.InvokeReply> doCall(Protocol.RabbitMessage message, Protocol.InvokeRabbitReply request, ProcedureMetrics metrics,
+                                                         CompletableFuture<Void> slot) {
+        if (message.getMethod().equals("system.describe")) {
+            return CompletableFuture.completedFuture(new Protocol.InvokeReply(null, Protocol.InvokeReplyType.SERVICE_DESCRIPTOR, null, serviceDescriptor, null));
+        } else if (message.getMethod().startsWith("system.")) {
+            return CompletableFuture.completedFuture(new Protocol.InvokeReply(null, Protocol.InvokeReplyType.ERROR, new IllegalAccessException("System methods forbidden"), null, null));
+        } else {
+            final int methodId = message.getMethodId() != null ? message.getMethodId() : -1;
+            final Procedure procedure = dispatchTable.procedure(methodId);
+            if(procedure == null) return CompletableFuture.completedFuture(new Protocol.InvokeReply(null, Protocol.InvokeReplyType.ERROR, new IllegalArgumentException("Method not found"), null, null));
+            final Object[] params = message.getArgs();
+            if(params.length != procedure.getArity()) return CompletableFuture.completedFuture(new Protocol.InvokeReply(null, Protocol.InvokeReplyType.ERROR, new IllegalArgumentException("Wrong number of arguments"), null, null));
+            final MethodHandle invoker = dispatchTable.invoker(methodId);
+            // The typed actor blocks its caller until the method returns, so invoke off the server actor
+            return CompletableFuture.supplyAsync(() -> {
+                        final long start = System.nanoTime();
+                        metrics.recordQueueWait(queueWait(request, start));
+                        // The deadline may also pass while the call waits for a thread
+                        if(isExpired(request)) {
+                            counters.expired.increment();
+                            throw new CompletionException(new TimeoutException("Deadline exceeded"));
+                        }
+                        final Object result = invoke(invoker, params);
+                        final CompletionStage<Object> futureResult = result instanceof Source || result instanceof Publisher
+                                ? stream(result, request, slot) : (CompletionStage<Object>) result;
+                        return futureResult.whenComplete((r, t) -> metrics.recordExecution(System.nanoTime() - start));
+                    }, blockingDispatcher)
+                    .thenCompose(futureResult -> futureResult)
+                    .thenApply(result -> {
+                        if(result == STREAMED) return STREAMED_REPLY;
+                        if(Logger.isDebugEnabled()) Logger.debug("Server method result: " + result);
+                        return new Protocol.InvokeReply(null, Protocol.InvokeReplyType.RESULT, null, null, result);
+                    });
+        }
+    }
+
+    private ExecutionContextExecutor blockingDispatcher(String id) {
+        if(context().system().dispatchers().hasDispatcher(id)) return context().system().dispatchers().lookup(id);
+        Logger.warn("No dispatcher " + id + " configured, service methods will block the default dispatcher");
+        return context().dispatcher();
+    }
+
+    private Object invoke(MethodHandle invoker, Object[] params) {
+        try {
+            return (Object) invoker.invokeExact(interfaceInstance, params);
+        } catch (Throwable t) {
+            throw new CompletionException(t);
+        }
+    }
+
+    private static class Executed {
+        private final Object incarnation;
+
+        private Executed(Object incarnation) {
+            this.incarnation = incarnation;
+        }
+    }
+
+    /**
+     * A request waiting for an execution slot. Higher AMQP priorities go first, equal ones in arrival order.
+     */
+    private static class Pending implements Comparable<Pending> {
+        private final Protocol.InvokeRabbitReply request;
+        private final int priority;
+        private final long arrival;
+
+        private Pending(Protocol.InvokeRabbitReply request, long arrival) {
+            this.request = request;
+            final Integer priority = request.properties.getPriority();
+            this.priority = priority != null ? priority : 0;
+            this.arrival = arrival;
+        }
+
+        @Override
+        public int compareTo(Pending other) {
+            if(priority != other.priority) return Integer.compare(other.priority, priority);
+            return Long.compare(arrival, other.arrival);
+        }
+    }
+
+    @Override
+    public void postStop() throws Exception {
+        streams.values().forEach(StreamSender::cancel);
+        if(link != null) link.close();
+    }
 }
\ No newline at end of file
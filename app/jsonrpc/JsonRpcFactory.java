@@ -1,11 +1,41 @@
 package jsonrpc;
 
 import akka.actor.ActorRef;
+import jsonrpc.codec.Codec;
+
+import java.util.List;
 
 public interface JsonRpcFactory {
     <T> T createClient(Class<T> clazz, String exchange, String routingKey);
 
     <T> T createClient(Class<T> clazz, String exchange, String routingKey, int timeout);
 
+    <T> T createClient(Class<T> clazz, String exchange, String routingKey, int timeout, Codec codec);
+
+    <T> T createClient(Class<T> clazz, String exchange, String routingKey, int timeout, Codec codec, ConcurrencyLimiter limiter);
+
+    /**
+     * A client of a service split over {@code shards} queues, sending each call to the shard its {@link ShardKey}
+     * hashes to.
+     */
+    <T> T createShardedClient(Class<T> clazz, String exchange, String queueName, int shards);
+
+    /**
+     * A client of a service replicated behind several routing keys, any of which can serve any call; each call goes
+     * to the less loaded of two replicas picked at random.
+     */
+    <T> T createBalancedClient(Class<T> clazz, String exchange, List<String> routingKeys);
+
     ActorRef createServer(String queueName, Class<?> interfaceClass, Class<?> instanceClass);
+
+    /**
+     * Serves the queue with {@code workers} consumers, each calling its own instance of {@code instanceClass}. A
+     * service whose instances hold state they must share needs a single worker.
+     */
+    ActorRef createServer(String queueName, Class<?> interfaceClass, Class<?> instanceClass, int workers);
+
+    /**
+     * Serves one shard of a sharded service, with its own instance of {@code instanceClass}.
+     */
+    ActorRef createShardServer(String queueName, int shard, int shards, Class<?> interfaceClass, Class<?> instanceClass);
 }
@@ -5,39 +5,112 @@ import akka.actor.ActorSystem;
 import akka.actor.TypedActor;
 import akka.actor.TypedProps;
 import com.google.inject.Inject;
+import jsonrpc.codec.Codec;
+import jsonrpc.codec.Codecs;
+import jsonrpc.metrics.RpcMetrics;
+import jsonrpc.transport.Transport;
 
-import java.lang.reflect.Proxy;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
 
 public class JsonRpcFactoryImpl implements JsonRpcFactory {
-    private final RabbitConnection rabbitConnection;
+    private final Transport transport;
+    private final RabbitConfig rabbitConfig;
     private final ActorSystem system;
     private final JsonRpcService jsonRpcService;
+    private final RpcMetrics rpcMetrics;
 
     @Inject
-    public JsonRpcFactoryImpl(RabbitConnection rabbitConnection, ActorSystem system, JsonRpcService jsonRpcService) {
-        this.rabbitConnection = rabbitConnection;
+    public JsonRpcFactoryImpl(Transport transport, RabbitConfig rabbitConfig, ActorSystem system, JsonRpcService jsonRpcService, RpcMetrics rpcMetrics) {
+        this.transport = transport;
+        this.rabbitConfig = rabbitConfig;
         this.system = system;
         this.jsonRpcService = jsonRpcService;
+        this.rpcMetrics = rpcMetrics;
     }
 
     @Override
     public <T> T createClient(Class<T> clazz, String exchange, String routingKey) {
-        final ActorRef actor = system.actorOf(JsonRpcActorClient.props(rabbitConnection, exchange, routingKey, -1, jsonRpcService));
-        final SenderProxy proxy = new SenderProxy(system, actor);
-        return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class[]{clazz}, proxy);
+        return createClient(clazz, exchange, routingKey, -1);
     }
 
     @Override
     public <T> T createClient(Class<T> clazz, String exchange, String routingKey, int timeout) {
-        final ActorRef actor = system.actorOf(JsonRpcActorClient.props(rabbitConnection, exchange, routingKey, timeout, jsonRpcService));
-        final SenderProxy proxy = new SenderProxy(system, actor);
-        return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class[]{clazz}, proxy);
+        return createClient(clazz, exchange, routingKey, timeout, Codecs.forName(rabbitConfig.getClientCodec()));
+    }
+
+    @Override
+    public <T> T createClient(Class<T> clazz, String exchange, String routingKey, int timeout, Codec codec) {
+        return createClient(clazz, exchange, routingKey, timeout, codec, createLimiter());
+    }
+
+    @Override
+    public <T> T createClient(Class<T> clazz, String exchange, String routingKey, int timeout, Codec codec, ConcurrencyLimiter limiter) {
+        final Map<Method, MethodPolicy> policies = MethodPolicy.forInterface(clazz);
+        final ActorRef actor = system.actorOf(JsonRpcActorClient.props(transport, rabbitConfig, exchange, routingKey, timeout, codec, jsonRpcService, rpcMetrics));
+        // The client actor times the call out itself, the ask must not give up before it does
+        final long askTimeout = Math.max(rabbitConfig.getAskTimeoutMillis(), timeout + 2 * rabbitConfig.getTimerTickMillis());
+        final SenderProxy proxy = new SenderProxy(system, actor, limiter, askTimeout);
+        register(clazz.getSimpleName() + '@' + exchange + '/' + routingKey, proxy, limiter);
+        return proxy.proxy(clazz, policies);
+    }
+
+    @Override
+    public <T> T createShardedClient(Class<T> clazz, String exchange, String queueName, int shards) {
+        final Map<Method, MethodPolicy> policies = MethodPolicy.forInterface(clazz);
+        final Codec codec = Codecs.forName(rabbitConfig.getClientCodec());
+        final ActorRef[] actors = new ActorRef[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            final String routingKey = ConsistentHashRing.queueName(queueName, shard, shards);
+            actors[shard] = system.actorOf(JsonRpcActorClient.props(transport, rabbitConfig, exchange, routingKey, -1, codec, jsonRpcService, rpcMetrics));
+        }
+        final ConcurrencyLimiter limiter = createLimiter();
+        final SenderProxy proxy = new SenderProxy(system, actors, limiter, rabbitConfig.getAskTimeoutMillis());
+        register(clazz.getSimpleName() + '@' + exchange + '/' + queueName + '*' + shards, proxy, limiter);
+        return proxy.proxy(clazz, policies);
+    }
+
+    @Override
+    public <T> T createBalancedClient(Class<T> clazz, String exchange, List<String> routingKeys) {
+        final Map<Method, MethodPolicy> policies = MethodPolicy.forInterface(clazz);
+        final Codec codec = Codecs.forName(rabbitConfig.getClientCodec());
+        final String[] keys = routingKeys.toArray(new String[routingKeys.size()]);
+        final ActorRef actor = system.actorOf(JsonRpcActorClient.props(transport, rabbitConfig, exchange, keys, -1, codec, jsonRpcService, rpcMetrics));
+        final ConcurrencyLimiter limiter = createLimiter();
+        final SenderProxy proxy = new SenderProxy(system, actor, limiter, rabbitConfig.getAskTimeoutMillis());
+        register(clazz.getSimpleName() + '@' + exchange + '/' + String.join(",", routingKeys), proxy, limiter);
+        return proxy.proxy(clazz, policies);
+    }
+
+    private void register(String client, SenderProxy proxy, ConcurrencyLimiter limiter) {
+        rpcMetrics.limiter(client, limiter);
+        rpcMetrics.cache(client, proxy.getCache());
+    }
+
+    private ConcurrencyLimiter createLimiter() {
+        return new ConcurrencyLimiter(rabbitConfig.getLimitMaxInFlight(), ConcurrencyLimiter.Overflow.forName(rabbitConfig.getLimitOverflow()),
+                rabbitConfig.getLimitMaxQueued(), rabbitConfig.getLimitWaitMillis());
     }
 
     @Override
     public ActorRef createServer(String queueName, Class<?> interfaceClass, Class<?> instanceClass) {
-        final Object actor = TypedActor.get(system).typedActorOf(new TypedProps(interfaceClass, instanceClass));
-        final ActorRef server = system.actorOf(JsonRpcActorServer.props(rabbitConnection, queueName, interfaceClass, actor, jsonRpcService));
+        return createServer(queueName, interfaceClass, instanceClass, rabbitConfig.getServerWorkers());
+    }
+
+    @Override
+    public ActorRef createServer(String queueName, Class<?> interfaceClass, Class<?> instanceClass, int workers) {
+        // A typed actor runs one call at a time, every worker needs its own for the workers to run in parallel
+        final Object[] actors = new Object[workers];
+        for (int i = 0; i < workers; i++) {
+            actors[i] = TypedActor.get(system).typedActorOf(new TypedProps(interfaceClass, instanceClass));
+        }
+        final ActorRef server = system.actorOf(JsonRpcServerSupervisor.props(transport, rabbitConfig, queueName, interfaceClass, actors, jsonRpcService, rpcMetrics));
         return server;
     }
+
+    @Override
+    public ActorRef createShardServer(String queueName, int shard, int shards, Class<?> interfaceClass, Class<?> instanceClass) {
+        return createServer(ConsistentHashRing.queueName(queueName, shard, shards), interfaceClass, instanceClass);
+    }
 }
\ No newline at end of file
@@ -1,15 +1,24 @@
 package jsonrpc;
 
+import jsonrpc.metrics.RpcMetrics;
+import jsonrpc.transport.Transport;
+import jsonrpc.transport.TransportProvider;
 import play.api.Configuration;
 import play.api.Environment;
 import play.api.inject.Binding;
 import play.api.inject.Module;
 import scala.collection.Seq;
 
+import javax.inject.Singleton;
+
 public class JsonRpcModule extends Module {
     @Override
     public Seq<Binding<?>> bindings(Environment environment, Configuration configuration) {
         return seq(
+            bind(RabbitConfig.class).toSelf(),
+            bind(RabbitConnection.class).toSelf(),
+            bind(RpcMetrics.class).toSelf(),
+            bind(Transport.class).toProvider(TransportProvider.class).in(Singleton.class),
             bind(JsonRpcFactory.class).to(JsonRpcFactoryImpl.class)
         );
     }
@@ -0,0 +1,40 @@
+package jsonrpc;
+
+import akka.actor.AbstractActor;
+import akka.actor.OneForOneStrategy;
+import akka.actor.Props;
+import akka.actor.SupervisorStrategy;
+import akka.japi.pf.DeciderBuilder;
+import akka.japi.pf.ReceiveBuilder;
+import jsonrpc.metrics.RpcMetrics;
+import jsonrpc.transport.Transport;
+import scala.concurrent.duration.Duration;
+
+import java.util.concurrent.TimeUnit;
+
+public class JsonRpcServerSupervisor extends AbstractActor {
+    private static final SupervisorStrategy strategy = new OneForOneStrategy(10, Duration.create(1, TimeUnit.MINUTES),
+            DeciderBuilder.matchAny(t -> SupervisorStrategy.restart()).build());
+
+    /**
+     * One worker per element of {@code interfaceInstances}, each serving its own instance.
+     */
+    public static Props props(Transport transport, RabbitConfig rabbitConfig, String queueName, Class<?> interfaceClass, Object[] interfaceInstances, JsonRpcService jsonRpcService, RpcMetrics rpcMetrics) {
+        return Props.create(JsonRpcServerSupervisor.class, transport, rabbitConfig, queueName, interfaceClass, interfaceInstances, jsonRpcService, rpcMetrics);
+    }
+
+    public JsonRpcServerSupervisor(Transport transport, RabbitConfig rabbitConfig, String queueName, Class<?> interfaceClass, Object[] interfaceInstances, JsonRpcService jsonRpcService, RpcMetrics rpcMetrics) {
+        for(int i = 0; i < interfaceInstances.length; i++) {
+            context().actorOf(JsonRpcActorServer.props(transport, rabbitConfig, queueName, interfaceClass, interfaceInstances[i], jsonRpcService, rpcMetrics), "worker-" + i);
+        }
+
+        receive(
+                ReceiveBuilder.matchAny(any -> unhandled(any)).build()
+        );
+    }
+
+    @Override
+    public SupervisorStrategy supervisorStrategy() {
+        return strategy;
+    }
+}
\ No newline at end of file
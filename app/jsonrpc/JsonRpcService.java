@@ -1,18 +1,40 @@
 package jsonrpc;
 
+import com.google.inject.Singleton;
 import jsonrpc.models.Parameter;
 import jsonrpc.models.Procedure;
 import jsonrpc.models.ServiceDescriptor;
+import play.libs.Json;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+@Singleton
 public class JsonRpcService {
+    private final Map<Class<?>, ServiceDescriptor> serviceDescriptors = new ConcurrentHashMap<>();
+    private final Map<Class<?>, DispatchTable> dispatchTables = new ConcurrentHashMap<>();
+    private final TypeResolver typeResolver = new TypeResolver(Json.mapper().getTypeFactory());
+
+    public ServiceDescriptor getServiceDescriptor(Class<?> clazz) {
+        return serviceDescriptors.computeIfAbsent(clazz, this::createServiceDescriptor);
+    }
+
+    public DispatchTable getDispatchTable(Class<?> clazz) {
+        return dispatchTables.computeIfAbsent(clazz, c -> createDispatchTable(getServiceDescriptor(c)));
+    }
+
     public ServiceDescriptor createServiceDescriptor(Class<?> clazz) {
 
         final Method[] methods = clazz.getMethods();
@@ -29,6 +51,35 @@ public class JsonRpcService {
         return new ServiceDescriptor(clazz.getName(), procedures);
     }
 
+    public DispatchTable createDispatchTable(ServiceDescriptor serviceDescriptor) {
+        final List<Procedure> procedures = serviceDescriptor.getProcedures();
+        final int size = procedures.stream().mapToInt(Procedure::getId).max().orElse(-1) + 1;
+        final Procedure[] byId = new Procedure[size];
+        final MethodHandle[] invokers = new MethodHandle[size];
+        final Map<String, List<List<DispatchTable.Candidate>>> byName = new HashMap<>();
+        for(Procedure proc : procedures) {
+            typeResolver.resolve(proc);
+            byId[proc.getId()] = proc;
+            if(proc.getInternalMethod() != null) invokers[proc.getId()] = createInvoker(proc.getInternalMethod());
+            final Class<?>[] parameterClasses = new Class<?>[proc.getArity()];
+            for (int i = 0; i < parameterClasses.length; i++) {
+                parameterClasses[i] = findClass(proc.getParameters().get(i).getType());
+            }
+            final List<List<DispatchTable.Candidate>> byArity = byName.computeIfAbsent(proc.getName(), name -> new ArrayList<>());
+            while(byArity.size() <= proc.getArity()) byArity.add(new ArrayList<>());
+            byArity.get(proc.getArity()).add(new DispatchTable.Candidate(proc, parameterClasses));
+        }
+        final Map<String, DispatchTable.Candidate[][]> overloads = new HashMap<>();
+        byName.forEach((name, byArity) -> {
+            final DispatchTable.Candidate[][] candidates = new DispatchTable.Candidate[byArity.size()][];
+            for (int i = 0; i < candidates.length; i++) {
+                if(!byArity.get(i).isEmpty()) candidates[i] = byArity.get(i).toArray(new DispatchTable.Candidate[0]);
+            }
+            overloads.put(name, candidates);
+        });
+        return new DispatchTable(byId, invokers, overloads);
+    }
+
     public Optional<Procedure> findProcedure(ServiceDescriptor serviceDescriptor, int id) {
         return serviceDescriptor.getProcedures().stream().filter(p -> p.getId() == id).findFirst();
     }
@@ -53,18 +104,32 @@ public class JsonRpcService {
         }).findFirst();
     }
 
+    private MethodHandle createInvoker(Method method) {
+        try {
+            return MethodHandles.publicLookup().unreflect(method)
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot invoke " + method, e);
+        }
+    }
+
+    private Class<?> findClass(String className) {
+        try {
+            return Class.forName(fixPrimitiveClassName(className));
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
     private String getReturnType(Method method) {
         final Type returnType = method.getGenericReturnType();
         if (returnType instanceof Class<?>)
             return returnType.getTypeName();
         else  {
+            // The result type of CompletionStage<T>, or the element type of Source<T, Mat> and Publisher<T>
             final ParameterizedType type = (ParameterizedType) returnType;
-            final Type[] typeArguments = type.getActualTypeArguments();
-            String found = null;
-            for(Type typeArgument : typeArguments) {
-                found = typeArgument.getTypeName();
-            }
-            return found;
+            return type.getActualTypeArguments()[0].getTypeName();
         }
     }
 
@@ -0,0 +1,83 @@
+package jsonrpc;
+
+import akka.stream.javadsl.Source;
+import org.reactivestreams.Publisher;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * How {@link SenderProxy} calls one interface method, read once from the method's annotations.
+ */
+class MethodPolicy {
+    private static final String[] NONE = new String[0];
+
+    final String cacheRegion;
+    final long cacheTtlNanos;
+    final int cacheMaxEntries;
+    final String[] evictRegions;
+    final boolean coalesce;
+    final boolean oneWay;
+    final boolean idempotent;
+    final int priority;
+    final Class<?> streamType;
+    final int shardKey;
+
+    MethodPolicy(Method method) {
+        final RpcCacheable cacheable = method.getAnnotation(RpcCacheable.class);
+        if(cacheable != null) {
+            cacheRegion = cacheable.region().isEmpty() ? method.getName() : cacheable.region();
+            cacheTtlNanos = cacheable.unit().toNanos(cacheable.ttl());
+            cacheMaxEntries = cacheable.maxEntries();
+        } else {
+            cacheRegion = null;
+            cacheTtlNanos = 0;
+            cacheMaxEntries = 0;
+        }
+        final RpcCacheEvict evict = method.getAnnotation(RpcCacheEvict.class);
+        evictRegions = evict != null ? evict.value() : NONE;
+        coalesce = method.isAnnotationPresent(Coalesce.class);
+        oneWay = method.isAnnotationPresent(OneWay.class);
+        if(oneWay && evictRegions.length > 0) {
+            // A one-way call completes before the server ran it, a cache refilled in between would stay stale
+            throw new IllegalArgumentException(method + " is @OneWay, it cannot also be @RpcCacheEvict");
+        }
+        idempotent = method.isAnnotationPresent(Idempotent.class);
+        final Priority priority = method.getAnnotation(Priority.class);
+        this.priority = priority != null ? priority.value() : 0;
+        final Class<?> returnType = method.getReturnType();
+        streamType = returnType == Source.class || returnType == Publisher.class ? returnType : null;
+        shardKey = shardKey(method);
+    }
+
+    /**
+     * The policies of every method of an interface, so that conflicting annotations fail when a client is created
+     * rather than at a later call.
+     */
+    static Map<Method, MethodPolicy> forInterface(Class<?> clazz) {
+        final Map<Method, MethodPolicy> policies = new HashMap<>();
+        final Map<String, MethodPolicy> regions = new HashMap<>();
+        for(Method method : clazz.getMethods()) {
+            final MethodPolicy policy = new MethodPolicy(method);
+            policies.put(method, policy);
+            if(policy.cacheRegion == null) continue;
+            final MethodPolicy first = regions.putIfAbsent(policy.cacheRegion, policy);
+            if(first != null && (first.cacheTtlNanos != policy.cacheTtlNanos || first.cacheMaxEntries != policy.cacheMaxEntries)) {
+                throw new IllegalArgumentException(method + " caches in region " + policy.cacheRegion + " with other bounds than the methods sharing it");
+            }
+        }
+        return policies;
+    }
+
+    private static int shardKey(Method method) {
+        final Annotation[][] annotations = method.getParameterAnnotations();
+        for (int i = 0; i < annotations.length; i++) {
+            for (Annotation annotation : annotations[i]) {
+                if(annotation instanceof ShardKey) return i;
+            }
+        }
+        return -1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,16 @@
+package jsonrpc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a remote method whose callers want no reply. The request is published without a reply address and the
+ * call completes once the transport accepted it, so callers never learn how the remote execution went. Such a call
+ * does not know when its effects happen, so it cannot be {@link RpcCacheEvict}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface OneWay {
+}
\ No newline at end of file
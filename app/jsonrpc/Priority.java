@@ -0,0 +1,21 @@
+package jsonrpc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The AMQP priority requests of a remote method are published at, from 0 up to the queue's
+ * {@code rabbitmq.server.maxPriority}. Higher priority requests overtake lower ones waiting in the server's buffer,
+ * and in the queue too once it is declared with a maximum priority. Calls can override it with
+ * {@link SenderProxy#withPriority}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Priority {
+    int BULK = 0;
+    int INTERACTIVE = 8;
+
+    int value();
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+package jsonrpc;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+/**
+ * Tracks publisher confirms of one channel without ever waiting for them. Every publish registers a future under its
+ * delivery tag; broker acks and nacks, single or multiple, complete the futures as they arrive.
+ *
+ * {@link #track()} and the publish it covers must not interleave with other publishes on the same channel.
+ */
+public class PublisherConfirms implements ConfirmListener {
+    private final Channel channel;
+    private final ConcurrentSkipListMap<Long, CompletableFuture<Void>> outstanding = new ConcurrentSkipListMap<>();
+
+    public PublisherConfirms(Channel channel) throws IOException {
+        this.channel = channel;
+        channel.confirmSelect();
+        channel.addConfirmListener(this);
+        channel.addShutdownListener(cause -> failAll(new IOException("Channel closed before the broker confirmed", cause)));
+    }
+
+    /**
+     * Registers the next publish on the channel; the returned future completes once the broker confirms it.
+     */
+    public CompletableFuture<Void> track() {
+        final CompletableFuture<Void> confirmed = new CompletableFuture<>();
+        outstanding.put(channel.getNextPublishSeqNo(), confirmed);
+        return confirmed;
+    }
+
+    /**
+     * Forgets a tracked publish whose basicPublish failed.
+     */
+    public void untrack(CompletableFuture<Void> confirmed) {
+        outstanding.values().remove(confirmed);
+    }
+
+    @Override
+    public void handleAck(long deliveryTag, boolean multiple) {
+        settle(deliveryTag, multiple, confirmed -> confirmed.complete(null));
+    }
+
+    @Override
+    public void handleNack(long deliveryTag, boolean multiple) {
+        final IOException nacked = new IOException("Message " + deliveryTag + " was nacked by the broker");
+        settle(deliveryTag, multiple, confirmed -> confirmed.completeExceptionally(nacked));
+    }
+
+    private void settle(long deliveryTag, boolean multiple, Consumer<CompletableFuture<Void>> settler) {
+        if(!multiple) {
+            final CompletableFuture<Void> confirmed = outstanding.remove(deliveryTag);
+            if(confirmed != null) settler.accept(confirmed);
+            return;
+        }
+        Map.Entry<Long, CompletableFuture<Void>> entry;
+        while((entry = outstanding.firstEntry()) != null && entry.getKey() <= deliveryTag) {
+            if(outstanding.remove(entry.getKey(), entry.getValue())) settler.accept(entry.getValue());
+        }
+    }
+
+    private void failAll(Exception e) {
+        while(!outstanding.isEmpty()) {
+            final Map.Entry<Long, CompletableFuture<Void>> entry = outstanding.pollFirstEntry();
+            if(entry != null) entry.getValue().completeExceptionally(e);
+        }
+    }
+}
\ No newline at end of file
@@ -8,6 +8,36 @@ import play.Configuration;
 public class RabbitConfig {
 	private String rabbitHost;
 	private String rabbitQueue;
+	private String transport;
+	private Boolean directReplyTo;
+	private Boolean publisherConfirms;
+	private Integer compressionThreshold;
+	private Integer compressionMaxInflatedBytes;
+	private String clientCodec;
+	private Integer batchMaxSize;
+	private Long batchWindowMillis;
+	private Long timerTickMillis;
+	private Integer timerWheelSize;
+	private Integer poolConnections;
+	private Integer poolChannelsPerConnection;
+	private Integer serverPrefetch;
+	private Integer serverWorkers;
+	private Integer serverConcurrency;
+	private String serverDispatcher;
+	private Integer serverMaxPriority;
+	private Long askTimeoutMillis;
+	private Integer limitMaxInFlight;
+	private String limitOverflow;
+	private Integer limitMaxQueued;
+	private Long limitWaitMillis;
+	private Integer streamChunkSize;
+	private Integer streamInitialCredit;
+	private Long streamIdleTimeoutMillis;
+	private String balancer;
+	private Double hedgePercentile;
+	private Long hedgeMinDelayMillis;
+	private Long hedgeMinSamples;
+	private Double hedgeBudget;
     private final Configuration config;
 
 	@Inject
@@ -30,4 +60,245 @@ public class RabbitConfig {
 		}
 		return rabbitQueue;
 	}
+
+	public String getTransport() {
+		if(transport == null)
+		{
+			transport = config.getString("rabbitmq.transport", "amqp");
+		}
+		return transport;
+	}
+
+	public boolean isDirectReplyTo() {
+		if(directReplyTo == null)
+		{
+			directReplyTo = config.getBoolean("rabbitmq.client.directReplyTo", true);
+		}
+		return directReplyTo;
+	}
+
+	public boolean isPublisherConfirms() {
+		if(publisherConfirms == null)
+		{
+			publisherConfirms = config.getBoolean("rabbitmq.publisherConfirms", false);
+		}
+		return publisherConfirms;
+	}
+
+	public int getCompressionThreshold() {
+		if(compressionThreshold == null)
+		{
+			compressionThreshold = config.getInt("rabbitmq.compression.threshold", 0);
+		}
+		return compressionThreshold;
+	}
+
+	public int getCompressionMaxInflatedBytes() {
+		if(compressionMaxInflatedBytes == null)
+		{
+			compressionMaxInflatedBytes = config.getInt("rabbitmq.compression.maxInflatedBytes", Compression.DEFAULT_MAX_INFLATED_BYTES);
+		}
+		return compressionMaxInflatedBytes;
+	}
+
+	public String getClientCodec() {
+		if(clientCodec == null)
+		{
+			clientCodec = config.getString("rabbitmq.client.codec", "json");
+		}
+		return clientCodec;
+	}
+
+	public int getBatchMaxSize() {
+		if(batchMaxSize == null)
+		{
+			batchMaxSize = config.getInt("rabbitmq.client.batch.maxSize", 1);
+		}
+		return batchMaxSize;
+	}
+
+	public long getBatchWindowMillis() {
+		if(batchWindowMillis == null)
+		{
+			batchWindowMillis = config.getLong("rabbitmq.client.batch.windowMillis", 2L);
+		}
+		return batchWindowMillis;
+	}
+
+	public long getTimerTickMillis() {
+		if(timerTickMillis == null)
+		{
+			timerTickMillis = config.getLong("rabbitmq.client.timer.tickMillis", 20L);
+		}
+		return timerTickMillis;
+	}
+
+	public int getTimerWheelSize() {
+		if(timerWheelSize == null)
+		{
+			timerWheelSize = config.getInt("rabbitmq.client.timer.wheelSize", 512);
+		}
+		return timerWheelSize;
+	}
+
+	public int getPoolConnections() {
+		if(poolConnections == null)
+		{
+			poolConnections = Math.max(1, config.getInt("rabbitmq.pool.connections", 1));
+		}
+		return poolConnections;
+	}
+
+	public int getPoolChannelsPerConnection() {
+		if(poolChannelsPerConnection == null)
+		{
+			poolChannelsPerConnection = Math.max(1, config.getInt("rabbitmq.pool.channelsPerConnection", 4));
+		}
+		return poolChannelsPerConnection;
+	}
+
+	public int getServerPrefetch() {
+		if(serverPrefetch == null)
+		{
+			serverPrefetch = config.getInt("rabbitmq.server.prefetch", 64);
+		}
+		return serverPrefetch;
+	}
+
+	public int getServerWorkers() {
+		if(serverWorkers == null)
+		{
+			final int workers = config.getInt("rabbitmq.server.workers", 0);
+			serverWorkers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+		}
+		return serverWorkers;
+	}
+
+	public String getServerDispatcher() {
+		if(serverDispatcher == null)
+		{
+			serverDispatcher = config.getString("rabbitmq.server.dispatcher", "jsonrpc-blocking-dispatcher");
+		}
+		return serverDispatcher;
+	}
+
+	public int getServerConcurrency() {
+		if(serverConcurrency == null)
+		{
+			serverConcurrency = config.getInt("rabbitmq.server.concurrency", 16);
+		}
+		return serverConcurrency;
+	}
+
+	public int getServerMaxPriority() {
+		if(serverMaxPriority == null)
+		{
+			serverMaxPriority = Math.min(255, config.getInt("rabbitmq.server.maxPriority", 0));
+		}
+		return serverMaxPriority;
+	}
+
+	public long getAskTimeoutMillis() {
+		if(askTimeoutMillis == null)
+		{
+			askTimeoutMillis = config.getLong("rabbitmq.client.askTimeoutMillis", 10000L);
+		}
+		return askTimeoutMillis;
+	}
+
+	public int getLimitMaxInFlight() {
+		if(limitMaxInFlight == null)
+		{
+			limitMaxInFlight = config.getInt("rabbitmq.client.limit.maxInFlight", 0);
+		}
+		return limitMaxInFlight;
+	}
+
+	public String getLimitOverflow() {
+		if(limitOverflow == null)
+		{
+			limitOverflow = config.getString("rabbitmq.client.limit.overflow", "reject");
+		}
+		return limitOverflow;
+	}
+
+	public int getLimitMaxQueued() {
+		if(limitMaxQueued == null)
+		{
+			limitMaxQueued = config.getInt("rabbitmq.client.limit.maxQueued", 256);
+		}
+		return limitMaxQueued;
+	}
+
+	public long getLimitWaitMillis() {
+		if(limitWaitMillis == null)
+		{
+			limitWaitMillis = config.getLong("rabbitmq.client.limit.waitMillis", 1000L);
+		}
+		return limitWaitMillis;
+	}
+
+	public int getStreamChunkSize() {
+		if(streamChunkSize == null)
+		{
+			streamChunkSize = Math.max(1, config.getInt("rabbitmq.stream.chunkSize", 256));
+		}
+		return streamChunkSize;
+	}
+
+	public int getStreamInitialCredit() {
+		if(streamInitialCredit == null)
+		{
+			streamInitialCredit = Math.max(1, config.getInt("rabbitmq.stream.initialCredit", 4));
+		}
+		return streamInitialCredit;
+	}
+
+	public long getStreamIdleTimeoutMillis() {
+		if(streamIdleTimeoutMillis == null)
+		{
+			streamIdleTimeoutMillis = config.getLong("rabbitmq.stream.idleTimeoutMillis", 30000L);
+		}
+		return streamIdleTimeoutMillis;
+	}
+
+	public String getBalancer() {
+		if(balancer == null)
+		{
+			balancer = config.getString("rabbitmq.client.balancer", "least-outstanding");
+		}
+		return balancer;
+	}
+
+	public double getHedgePercentile() {
+		if(hedgePercentile == null)
+		{
+			hedgePercentile = config.getDouble("rabbitmq.client.hedge.percentile", 95.0);
+		}
+		return hedgePercentile;
+	}
+
+	public long getHedgeMinDelayMillis() {
+		if(hedgeMinDelayMillis == null)
+		{
+			hedgeMinDelayMillis = config.getLong("rabbitmq.client.hedge.minDelayMillis", 5L);
+		}
+		return hedgeMinDelayMillis;
+	}
+
+	public long getHedgeMinSamples() {
+		if(hedgeMinSamples == null)
+		{
+			hedgeMinSamples = config.getLong("rabbitmq.client.hedge.minSamples", 100L);
+		}
+		return hedgeMinSamples;
+	}
+
+	public double getHedgeBudget() {
+		if(hedgeBudget == null)
+		{
+			hedgeBudget = config.getDouble("rabbitmq.client.hedge.budget", 0.05);
+		}
+		return hedgeBudget;
+	}
 }
\ No newline at end of file
@@ -2,28 +2,248 @@ package jsonrpc;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
+import play.Logger;
+import play.inject.ApplicationLifecycle;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Singleton
 public class RabbitConnection {
-	private Connection connection;
 	private final RabbitConfig rabbitConfig;
+	private final Compression compression;
+	private final AtomicInteger nextConnection = new AtomicInteger();
+	private final AtomicInteger nextStripe = new AtomicInteger();
+	private volatile Pool pool;
+	private boolean closed;
 
 	@Inject
-	public RabbitConnection(RabbitConfig rabbitConfig) {
+	public RabbitConnection(RabbitConfig rabbitConfig, ApplicationLifecycle lifecycle) {
 		this.rabbitConfig = rabbitConfig;
+		this.compression = new Compression(rabbitConfig.getCompressionThreshold(), rabbitConfig.getCompressionMaxInflatedBytes());
+		lifecycle.addStopHook(() -> {
+			close();
+			return CompletableFuture.completedFuture(null);
+		});
 	}
 
 	public Connection getConnection() throws IOException, TimeoutException {
-		if(connection == null) {
-			ConnectionFactory factory = new ConnectionFactory();
+		final Pool pool = pool();
+		final int index = Math.floorMod(nextConnection.getAndIncrement(), pool.connections.size());
+		final Connection connection = pool.connections.get(index);
+		return connection.isOpen() ? connection : reconnect(pool, index);
+	}
+
+	/**
+	 * Body compression shared by every client and server on these connections.
+	 */
+	public Compression getCompression() {
+		return compression;
+	}
+
+	public Channel createChannel() throws IOException, TimeoutException {
+		return getConnection().createChannel();
+	}
+
+	public Lease leaseChannel() throws IOException, TimeoutException, InterruptedException {
+		final Pool pool = pool();
+		final Stripe[] stripes = pool.stripes;
+		final int start = Math.floorMod(nextStripe.getAndIncrement(), stripes.length);
+		for(int i = 0; i < stripes.length; i++) {
+			final Stripe stripe = stripes[(start + i) % stripes.length];
+			if(stripe.lock.tryAcquire()) return lease(pool, stripe);
+		}
+		stripes[start].lock.acquire();
+		return lease(pool, stripes[start]);
+	}
+
+	/**
+	 * Leases the channel picked by {@code orderingKey}, waiting for it when it is in use.
+	 */
+	public Lease leaseChannel(int orderingKey) throws IOException, TimeoutException, InterruptedException {
+		final Pool pool = pool();
+		final Stripe stripe = pool.stripes[Math.floorMod(orderingKey, pool.stripes.length)];
+		stripe.lock.acquire();
+		return lease(pool, stripe);
+	}
+
+	/**
+	 * Publishes on a pooled channel. With publisher confirms enabled the returned stage completes once the broker
+	 * confirms the message, and fails if it is nacked; otherwise it is already complete.
+	 */
+	public CompletionStage<Void> publish(String exchange, String routingKey, AMQP.BasicProperties props, byte[] body) throws IOException {
+		return publish(exchange, routingKey, props, body, null);
+	}
+
+	/**
+	 * Publishes like {@link #publish(String, String, AMQP.BasicProperties, byte[])}, but always on the channel picked
+	 * by {@code orderingKey}: the broker only keeps the order of messages sent on the same channel.
+	 */
+	public CompletionStage<Void> publishInOrder(String exchange, String routingKey, AMQP.BasicProperties props, byte[] body, int orderingKey) throws IOException {
+		return publish(exchange, routingKey, props, body, (Integer) orderingKey);
+	}
+
+	private CompletionStage<Void> publish(String exchange, String routingKey, AMQP.BasicProperties props, byte[] body, Integer orderingKey) throws IOException {
+		try (Lease lease = orderingKey != null ? leaseChannel(orderingKey) : leaseChannel()) {
+			if(lease.confirms == null) {
+				lease.channel().basicPublish(exchange, routingKey, props, body);
+				return CompletableFuture.completedFuture(null);
+			}
+			final CompletableFuture<Void> confirmed = lease.confirms.track();
+			try {
+				lease.channel().basicPublish(exchange, routingKey, props, body);
+			} catch (IOException | RuntimeException e) {
+				lease.confirms.untrack(confirmed);
+				throw e;
+			}
+			return confirmed;
+		} catch (TimeoutException e) {
+			throw new IOException("Timed out opening a publishing channel", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while leasing a publishing channel", e);
+		}
+	}
+
+	private Lease lease(Pool pool, Stripe stripe) throws IOException, TimeoutException {
+		try {
+			// Holding the stripe's lock gives exclusive use of its channel, reopening it needs no other lock
+			if(!stripe.channel.isOpen()) {
+				final Connection connection = pool.connections.get(stripe.connection);
+				stripe.channel = (connection.isOpen() ? connection : reconnect(pool, stripe.connection)).createChannel();
+				stripe.confirms = confirm(stripe.channel);
+			}
+			return new Lease(stripe.lock, stripe.channel, stripe.confirms);
+		} catch (IOException | TimeoutException | RuntimeException e) {
+			stripe.lock.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Replaces the pooled connection at {@code index} once it has died, the stripes on it reopen their channels on
+	 * the new one as they are leased.
+	 */
+	private synchronized Connection reconnect(Pool pool, int index) throws IOException, TimeoutException {
+		if(closed) throw new IOException("Connection to " + rabbitConfig.getRabbitHost() + " is closed");
+		final Connection connection = pool.connections.get(index);
+		// Another caller may have replaced it already
+		if(connection.isOpen()) return connection;
+		Logger.warn("Reopening connection " + index + " to " + rabbitConfig.getRabbitHost());
+		final Connection reopened = pool.factory.newConnection();
+		pool.connections.set(index, reopened);
+		return reopened;
+	}
+
+	public synchronized void close() {
+		closed = true;
+		final Pool closing = pool;
+		pool = null;
+		if(closing == null) return;
+		for(Connection connection : closing.connections) {
+			try {
+				connection.close();
+			} catch (Exception e) {
+				Logger.error("Error closing connection", e);
+			}
+		}
+	}
+
+	private Pool pool() throws IOException, TimeoutException {
+		final Pool current = pool;
+		return current != null ? current : openPool();
+	}
+
+	private synchronized Pool openPool() throws IOException, TimeoutException {
+		if(closed) throw new IOException("Connection to " + rabbitConfig.getRabbitHost() + " is closed");
+		if(pool == null) {
+			final ConnectionFactory factory = new ConnectionFactory();
 			factory.setHost(rabbitConfig.getRabbitHost());
-			connection = factory.newConnection();
+			final List<Connection> connections = new ArrayList<>();
+			for(int i = 0; i < rabbitConfig.getPoolConnections(); i++) {
+				connections.add(factory.newConnection());
+			}
+			final Stripe[] stripes = new Stripe[connections.size() * rabbitConfig.getPoolChannelsPerConnection()];
+			for(int i = 0; i < stripes.length; i++) {
+				final int connection = i % connections.size();
+				final Channel channel = connections.get(connection).createChannel();
+				stripes[i] = new Stripe(connection, channel, confirm(channel));
+			}
+			pool = new Pool(factory, connections, stripes);
+		}
+		return pool;
+	}
+
+	private PublisherConfirms confirm(Channel channel) throws IOException {
+		return rabbitConfig.isPublisherConfirms() ? new PublisherConfirms(channel) : null;
+	}
+
+	/**
+	 * The connections and publishing stripes, published as a whole once they are all open.
+	 */
+	private static class Pool {
+		private final ConnectionFactory factory;
+		private final List<Connection> connections;
+		private final Stripe[] stripes;
+
+		private Pool(ConnectionFactory factory, List<Connection> connections, Stripe[] stripes) {
+			this.factory = factory;
+			this.connections = new CopyOnWriteArrayList<>(connections);
+			this.stripes = stripes;
+		}
+	}
+
+	/**
+	 * A publishing channel, only used by whoever holds its lock.
+	 */
+	private static class Stripe {
+		private final Semaphore lock = new Semaphore(1);
+		/**
+		 * Index of the pooled connection the channel is opened on.
+		 */
+		private final int connection;
+		private Channel channel;
+		private PublisherConfirms confirms;
+
+		private Stripe(int connection, Channel channel, PublisherConfirms confirms) {
+			this.connection = connection;
+			this.channel = channel;
+			this.confirms = confirms;
+		}
+	}
+
+	public static class Lease implements AutoCloseable {
+		private final Semaphore lock;
+		private final Channel channel;
+		private final PublisherConfirms confirms;
+		private boolean released;
+
+		private Lease(Semaphore lock, Channel channel, PublisherConfirms confirms) {
+			this.lock = lock;
+			this.channel = channel;
+			this.confirms = confirms;
+		}
+
+		public Channel channel() {
+			return channel;
+		}
+
+		@Override
+		public void close() {
+			if(released) return;
+			released = true;
+			lock.release();
 		}
-		return connection;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package jsonrpc;
+
+import akka.actor.ActorRef;
+import jsonrpc.models.Protocol;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Client side of a streaming call. The server sends elements in chunks, at most as many chunks ahead as it has
+ * credit for; every chunk handed on to the subscriber earns the server one more, so only a bounded number of
+ * elements is ever buffered here.
+ *
+ * The call starts when the method is invoked, and the stream can be subscribed to once.
+ */
+public class RemoteStream implements Publisher<Object>, Subscription {
+    private static final Runnable TERMINATED = () -> { };
+
+    private final Queue<List<Object>> chunks = new ConcurrentLinkedQueue<>();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicReference<Runnable> onTerminate = new AtomicReference<>();
+    private volatile Subscriber<? super Object> subscriber;
+    private volatile ActorRef client;
+    private volatile String id;
+    private volatile boolean done;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+    private volatile Throwable invalidRequest;
+
+    // Only touched while draining
+    private List<Object> current;
+    private int position;
+
+    /**
+     * Called by the client actor once the call is published.
+     */
+    public void bind(ActorRef client, String id) {
+        this.client = client;
+        this.id = id;
+    }
+
+    /**
+     * Runs {@code action} once the call is over, answered or cancelled, or right away if it already is. Only one
+     * action can be registered.
+     */
+    public void onTerminate(Runnable action) {
+        if(!onTerminate.compareAndSet(null, action)) action.run();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * True when the subscriber asked for more elements than have arrived, so it is the server keeping it waiting.
+     */
+    public boolean isWaiting() {
+        return !cancelled && requested.get() > 0 && chunks.isEmpty();
+    }
+
+    public void chunk(List<Object> elements) {
+        chunks.add(elements);
+        drain();
+    }
+
+    /**
+     * Ends the stream with the final reply of the call: an exception fails it, a collection is emitted first.
+     */
+    @SuppressWarnings("unchecked")
+    public void reply(Object message) {
+        if(message instanceof Throwable) {
+            error = (Throwable) message;
+        } else if(message instanceof Collection) {
+            chunks.add(new ArrayList<>((Collection<Object>) message));
+        }
+        done = true;
+        terminated();
+        drain();
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super Object> s) {
+        if(s == null) throw new NullPointerException("Subscriber is null");
+        synchronized (this) {
+            if(subscriber != null) {
+                s.onSubscribe(this);
+                s.onError(new IllegalStateException("A remote stream can only be subscribed to once"));
+                return;
+            }
+            subscriber = s;
+        }
+        s.onSubscribe(this);
+        drain();
+    }
+
+    @Override
+    public void request(long n) {
+        if(n <= 0) {
+            invalidRequest = new IllegalArgumentException("Requested " + n + " elements, rule 3.9");
+            cancel();
+        } else {
+            long current, next;
+            do {
+                current = requested.get();
+                next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!requested.compareAndSet(current, next));
+        }
+        drain();
+    }
+
+    @Override
+    public void cancel() {
+        if(cancelled) return;
+        cancelled = true;
+        final ActorRef client = this.client;
+        if(client != null) client.tell(new Protocol.StreamCredit(id, 0, true), ActorRef.noSender());
+        terminated();
+    }
+
+    private void terminated() {
+        final Runnable action = onTerminate.getAndSet(TERMINATED);
+        if(action != null && action != TERMINATED) action.run();
+    }
+
+    private void drain() {
+        if(wip.getAndIncrement() != 0) return;
+        int missed = 1;
+        do {
+            final Subscriber<? super Object> s = subscriber;
+            if(s != null && invalidRequest != null) {
+                final Throwable invalid = invalidRequest;
+                invalidRequest = null;
+                s.onError(invalid);
+            } else if(s != null) {
+                final long r = requested.get();
+                long emitted = 0;
+                int consumed = 0;
+                while(emitted != r && !cancelled) {
+                    if(current == null || position == current.size()) {
+                        if(current != null) consumed++;
+                        current = chunks.poll();
+                        position = 0;
+                        if(current == null) break;
+                        continue;
+                    }
+                    s.onNext(current.get(position++));
+                    emitted++;
+                }
+                if(current != null && position == current.size()) {
+                    current = null;
+                    consumed++;
+                }
+                if(emitted > 0 && r != Long.MAX_VALUE) requested.addAndGet(-emitted);
+                final ActorRef client = this.client;
+                if(consumed > 0 && client != null && !done) client.tell(new Protocol.StreamCredit(id, consumed, false), ActorRef.noSender());
+                if(done && current == null && chunks.isEmpty() && !cancelled) {
+                    cancelled = true;
+                    if(error != null) s.onError(error);
+                    else s.onComplete();
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while(missed != 0);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,117 @@
+package jsonrpc;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the replica queue of each call by the power of two choices: two replicas are sampled at random and the less
+ * loaded one wins, which avoids both herding onto the single best replica and the tail of a slow one. Load is either
+ * the calls outstanding on a replica or its latency EWMA scaled by them.
+ *
+ * Not thread safe, it is meant to be owned by a single actor.
+ */
+public class ReplicaBalancer {
+    public enum Strategy {
+        LEAST_OUTSTANDING,
+        EWMA;
+
+        public static Strategy forName(String name) {
+            return valueOf(name.toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String[] routingKeys;
+    private final Strategy strategy;
+    private final Random random;
+    private final int[] outstanding;
+    private final double[] latency;
+    private final long[] sampledAt;
+
+    public ReplicaBalancer(String[] routingKeys, Strategy strategy, Random random) {
+        this.routingKeys = routingKeys;
+        this.strategy = strategy;
+        this.random = random;
+        this.outstanding = new int[routingKeys.length];
+        this.latency = new double[routingKeys.length];
+        this.sampledAt = new long[routingKeys.length];
+    }
+
+    public int size() {
+        return routingKeys.length;
+    }
+
+    public String routingKey(int replica) {
+        return routingKeys[replica];
+    }
+
+    public int choose() {
+        final int size = routingKeys.length;
+        if(size == 1) return 0;
+        final int a = random.nextInt(size);
+        int b = random.nextInt(size - 1);
+        if(b >= a) b++;
+        return load(b) < load(a) ? b : a;
+    }
+
+    /**
+     * Like {@link #choose()} but avoiding {@code excluded}, unless it is the only replica.
+     */
+    public int chooseOther(int excluded) {
+        final int size = routingKeys.length;
+        if(size == 1) return 0;
+        if(size == 2) return 1 - excluded;
+        int a = random.nextInt(size - 1);
+        if(a >= excluded) a++;
+        int b = random.nextInt(size - 2);
+        if(b >= Math.min(a, excluded)) b++;
+        if(b >= Math.max(a, excluded)) b++;
+        return load(b) < load(a) ? b : a;
+    }
+
+    public void started(int replica) {
+        outstanding[replica]++;
+    }
+
+    /**
+     * @param latencyNanos how long the call took, or a negative value when it says nothing about the replica's speed
+     */
+    public void finished(int replica, long latencyNanos, long nowNanos) {
+        outstanding[replica]--;
+        if(latencyNanos >= 0) sample(replica, latencyNanos, nowNanos);
+    }
+
+    /**
+     * Counts a call the replica could not take as a slow one, so failing replicas do not look fast.
+     */
+    public void failed(int replica, long nowNanos) {
+        sample(replica, FAILURE_PENALTY_NANOS, nowNanos);
+    }
+
+    public int outstanding(int replica) {
+        return outstanding[replica];
+    }
+
+    public double latencyNanos(int replica) {
+        return latency[replica];
+    }
+
+    private double load(int replica) {
+        if(strategy == Strategy.LEAST_OUTSTANDING) return outstanding[replica];
+        return latency[replica] * (outstanding[replica] + 1);
+    }
+
+    private void sample(int replica, long latencyNanos, long nowNanos) {
+        // Peak EWMA: a slower sample counts at once, faster ones only pull the average down as time passes
+        if(latencyNanos > latency[replica]) {
+            latency[replica] = latencyNanos;
+        } else {
+            final double weight = Math.exp(-(nowNanos - sampledAt[replica]) / DECAY_NANOS);
+            latency[replica] = latency[replica] * weight + latencyNanos * (1 - weight);
+        }
+        sampledAt[replica] = nowNanos;
+    }
+}
\ No newline at end of file
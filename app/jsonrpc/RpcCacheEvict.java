@@ -0,0 +1,15 @@
+package jsonrpc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Clears the named {@link RpcCacheable} regions of the client whenever the annotated method completes.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RpcCacheEvict {
+    String[] value();
+}
\ No newline at end of file
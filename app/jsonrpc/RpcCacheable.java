@@ -0,0 +1,29 @@
+package jsonrpc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the results of a remote method on the client, keyed on the method and its arguments. Hits complete
+ * without publishing anything.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RpcCacheable {
+    /**
+     * Cache region, shared by every method naming it and evicted as a whole. Defaults to the method name.
+     */
+    String region() default "";
+
+    long ttl() default 60;
+
+    TimeUnit unit() default TimeUnit.SECONDS;
+
+    /**
+     * Entries kept in the region, least recently used ones are dropped first.
+     */
+    int maxEntries() default 1000;
+}
\ No newline at end of file
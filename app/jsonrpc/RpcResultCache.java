@@ -0,0 +1,151 @@
+package jsonrpc;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import play.libs.Json;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client side cache of remote results for {@link RpcCacheable} methods: named regions of bounded LRU maps whose
+ * entries expire after a TTL. Keys are the method plus the canonical JSON encoding of the arguments.
+ */
+public class RpcResultCache {
+    private final ObjectWriter keyWriter = Json.mapper().writer()
+            .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+    private final Map<String, Region> regions = new ConcurrentHashMap<>();
+
+    /**
+     * The named region, created with the given bounds if it does not exist yet. Every user of a region must give it
+     * the same bounds.
+     */
+    public Region region(String name, long ttlNanos, int maxEntries) {
+        final Region region = regions.computeIfAbsent(name, n -> new Region(ttlNanos, maxEntries));
+        if(region.ttlNanos != ttlNanos || region.maxEntries != maxEntries) {
+            throw new IllegalArgumentException("Cache region " + name + " exists with a ttl of " + region.ttlNanos + " ns and " + region.maxEntries
+                    + " entries, not " + ttlNanos + " ns and " + maxEntries);
+        }
+        return region;
+    }
+
+    /**
+     * The regions created so far, by name.
+     */
+    public Map<String, Region> getRegions() {
+        return Collections.unmodifiableMap(regions);
+    }
+
+    public void evict(String name) {
+        final Region region = regions.get(name);
+        if(region != null) region.clear();
+    }
+
+    public Key key(Method method, Object[] args) throws JsonProcessingException {
+        return new Key(method, args == null ? new byte[0] : keyWriter.writeValueAsBytes(args));
+    }
+
+    public static class Key {
+        private final Method method;
+        private final byte[] args;
+        private final int hash;
+
+        private Key(Method method, byte[] args) {
+            this.method = method;
+            this.args = args;
+            this.hash = 31 * method.hashCode() + Arrays.hashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Key key = (Key) o;
+            return hash == key.hash && method.equals(key.method) && Arrays.equals(args, key.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    public static class Entry {
+        public final Object value;
+        private final long expiresAt;
+
+        private Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public static class Region {
+        private final long ttlNanos;
+        private final int maxEntries;
+        private final LinkedHashMap<Key, Entry> entries;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private long generation;
+
+        private Region(long ttlNanos, int maxEntries) {
+            this.ttlNanos = ttlNanos;
+            this.maxEntries = maxEntries;
+            this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        /**
+         * The live entry for the key, or null on a miss.
+         */
+        public synchronized Entry get(Key key) {
+            final Entry entry = entries.get(key);
+            if(entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                hits.increment();
+                return entry;
+            }
+            if(entry != null) entries.remove(key);
+            misses.increment();
+            return null;
+        }
+
+        /**
+         * Changes on every eviction. Results fetched before an eviction must not be cached after it.
+         */
+        public synchronized long generation() {
+            return generation;
+        }
+
+        public synchronized void put(Key key, Object value, long generation) {
+            if(generation != this.generation) return;
+            entries.put(key, new Entry(value, System.nanoTime() + ttlNanos));
+        }
+
+        public synchronized void clear() {
+            generation++;
+            entries.clear();
+        }
+
+        public synchronized int size() {
+            return entries.size();
+        }
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+    }
+}
\ No newline at end of file
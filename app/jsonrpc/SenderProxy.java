@@ -2,30 +2,183 @@ package jsonrpc;
 
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
+import akka.stream.javadsl.Source;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import jsonrpc.models.Protocol;
+import play.libs.Json;
 import scala.compat.java8.FutureConverters;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import static akka.pattern.Patterns.ask;
 
 public class SenderProxy implements InvocationHandler {
     public final ActorSystem system;
-    private final ActorRef actor;
+    private final ActorRef[] actors;
+    private final ConsistentHashRing ring;
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private final ObjectWriter keyWriter = Json.mapper().writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+    private final Map<Method, MethodPolicy> policies = new ConcurrentHashMap<>();
+    private final RpcResultCache cache = new RpcResultCache();
+    private final ConcurrencyLimiter limiter;
+    private final long askTimeoutMillis;
+
+    private static final ThreadLocal<Integer> callPriority = new ThreadLocal<>();
+    private static final ThreadLocal<Integer> callTimeout = new ThreadLocal<>();
 
     public SenderProxy(ActorSystem system, ActorRef actor) {
+        this(system, actor, ConcurrencyLimiter.unlimited(), 10000);
+    }
+
+    public SenderProxy(ActorSystem system, ActorRef actor, ConcurrencyLimiter limiter, long askTimeoutMillis) {
+        this(system, new ActorRef[]{actor}, limiter, askTimeoutMillis);
+    }
+
+    /**
+     * A client of a sharded service, with one client actor per shard in shard order.
+     */
+    public SenderProxy(ActorSystem system, ActorRef[] actors, ConcurrencyLimiter limiter, long askTimeoutMillis) {
         this.system = system;
-        this.actor = actor;
+        this.actors = actors;
+        this.ring = new ConsistentHashRing(actors.length);
+        this.limiter = limiter;
+        this.askTimeoutMillis = askTimeoutMillis;
+    }
+
+    /**
+     * The limiter of a client made by {@link JsonRpcFactory}, so callers can check its state before calling.
+     */
+    public static ConcurrencyLimiter limiterOf(Object client) {
+        return ((SenderProxy) Proxy.getInvocationHandler(client)).limiter;
+    }
+
+    /**
+     * Runs {@code call} with the remote calls it makes on this thread published at {@code priority}, whatever the
+     * {@link Priority} of their methods.
+     */
+    public static <T> T withPriority(int priority, Supplier<T> call) {
+        final Integer outer = callPriority.get();
+        callPriority.set(priority);
+        try {
+            return call.get();
+        } finally {
+            if(outer == null) callPriority.remove();
+            else callPriority.set(outer);
+        }
+    }
+
+    /**
+     * A proxy of {@code clazz} calling through this handler, with the policies {@link MethodPolicy#forInterface} read.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T proxy(Class<T> clazz, Map<Method, MethodPolicy> policies) {
+        this.policies.putAll(policies);
+        return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class[]{clazz}, this);
+    }
+
+    /**
+     * Runs {@code call} with the remote calls it makes on this thread timing out after {@code timeoutMillis}, instead
+     * of the timeout their client was created with.
+     */
+    public static <T> T withTimeout(int timeoutMillis, Supplier<T> call) {
+        final Integer outer = callTimeout.get();
+        callTimeout.set(timeoutMillis);
+        try {
+            return call.get();
+        } finally {
+            if(outer == null) callTimeout.remove();
+            else callTimeout.set(outer);
+        }
     }
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        final Protocol.Invoke message = new Protocol.Invoke(method.getName(), args);
-        return FutureConverters.toJava(ask(actor, message, 10000)).thenApplyAsync(obj -> {
+        final MethodPolicy policy = policies.computeIfAbsent(method, MethodPolicy::new);
+        if(policy.streamType != null) return stream(policy, method, args);
+        if(policy.cacheRegion != null) return cached(policy, method, args);
+        final CompletionStage<Object> result = call(policy, method, args);
+        if(policy.evictRegions.length == 0) return result;
+        return result.whenComplete((r, t) -> {
+            for(String region : policy.evictRegions) cache.evict(region);
+        });
+    }
+
+    public RpcResultCache getCache() {
+        return cache;
+    }
+
+    private CompletionStage<Object> cached(MethodPolicy policy, Method method, Object[] args) throws Throwable {
+        final RpcResultCache.Region region = cache.region(policy.cacheRegion, policy.cacheTtlNanos, policy.cacheMaxEntries);
+        final RpcResultCache.Key key = cache.key(method, args);
+        final RpcResultCache.Entry hit = region.get(key);
+        if(hit != null) return CompletableFuture.completedFuture(hit.value);
+        final long generation = region.generation();
+        return call(policy, method, args).thenApply(result -> {
+            region.put(key, result, generation);
+            return result;
+        });
+    }
+
+    /**
+     * Starts a streaming call. Streams are neither cached nor coalesced, and their flow is bounded by credit. Each one
+     * counts as a call in flight for the limiter until it ends.
+     */
+    private Object stream(MethodPolicy policy, Method method, Object[] args) throws IOException {
+        final RemoteStream stream = new RemoteStream();
+        final ActorRef actor = actorFor(policy, args);
+        final Protocol.Invoke message = new Protocol.Invoke(method.getName(), args, timeout(), false, false, false, priority(policy), stream);
+        limiter.acquire().whenComplete((permit, t) -> {
+            if(t != null) {
+                stream.reply(t);
+                return;
+            }
+            stream.onTerminate(limiter::release);
+            actor.tell(message, ActorRef.noSender());
+        });
+        return policy.streamType == Source.class ? Source.fromPublisher(stream) : stream;
+    }
+
+    private CompletionStage<Object> call(MethodPolicy policy, Method method, Object[] args) throws IOException {
+        final ActorRef actor = actorFor(policy, args);
+        final int timeout = timeout();
+        final Protocol.Invoke message = new Protocol.Invoke(method.getName(), args, timeout, policy.coalesce, policy.oneWay, policy.idempotent,
+                priority(policy), null);
+        // The client actor times the call out itself, the ask must not give up before it does
+        final long askTimeout = timeout > 0 ? askTimeoutMillis + timeout : askTimeoutMillis;
+        return limiter.acquire().thenCompose(permit -> {
+            final CompletionStage<Object> reply = FutureConverters.toJava(ask(actor, message, askTimeout));
+            return reply.whenComplete((r, t) -> limiter.release());
+        }).thenApplyAsync(obj -> {
             if (obj instanceof Protocol.NullObject) return null;
             else if(obj instanceof Exception) throw new RuntimeException((Exception)obj);
             else return obj;
         });
     }
+
+    private static int priority(MethodPolicy policy) {
+        final Integer priority = callPriority.get();
+        return priority != null ? priority : policy.priority;
+    }
+
+    private static int timeout() {
+        final Integer timeout = callTimeout.get();
+        return timeout != null ? timeout : -1;
+    }
+
+    private ActorRef actorFor(MethodPolicy policy, Object[] args) throws IOException {
+        if(actors.length == 1) return actors[0];
+        if(policy.shardKey >= 0) return actors[ring.shard(keyWriter.writeValueAsBytes(args[policy.shardKey]))];
+        // Calls without a key may be served by any shard
+        return actors[Math.floorMod(nextShard.getAndIncrement(), actors.length)];
+    }
 }
\ No newline at end of file
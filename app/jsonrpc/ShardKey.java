@@ -0,0 +1,16 @@
+package jsonrpc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the parameter whose value picks the shard of a call to a sharded service. Equal values, compared by their
+ * canonical JSON encoding, always go to the same shard. Each shard must hold only the data of its keys, and calls
+ * without a key must give the same answer whichever shard serves them.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface ShardKey {
+}
\ No newline at end of file
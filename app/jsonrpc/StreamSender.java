@@ -0,0 +1,130 @@
+package jsonrpc;
+
+import com.rabbitmq.client.AMQP;
+import jsonrpc.codec.Codec;
+import jsonrpc.metrics.RpcMetrics;
+import jsonrpc.models.Protocol;
+import jsonrpc.transport.Transport;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import play.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Server side of a streaming call. Subscribes to the result of the procedure and publishes its elements in chunks,
+ * only requesting as many elements as the client gave credit for, so at most one chunk is held here at a time.
+ *
+ * Reactive streams signals arrive one at a time, on whatever thread the publisher uses; credit and cancellation come
+ * from the server actor.
+ */
+class StreamSender implements Subscriber<Object> {
+    static final String STREAM_ID_HEADER = "x-stream-id";
+    static final String CREDIT_HEADER = "x-credit";
+
+    private final String streamId;
+    private final Transport.ServerLink link;
+    private final Protocol.InvokeRabbitReply request;
+    private final Codec codec;
+    private final RpcMetrics.Counters counters;
+    private final int chunkSize;
+    private final int initialCredit;
+    private final CompletableFuture<Void> published = new CompletableFuture<>();
+    private volatile Subscription subscription;
+    private List<Object> chunk;
+
+    StreamSender(String streamId, Transport.ServerLink link, Protocol.InvokeRabbitReply request, Codec codec, RpcMetrics.Counters counters,
+                 int chunkSize, int initialCredit) {
+        this.streamId = streamId;
+        this.link = link;
+        this.request = request;
+        this.codec = codec;
+        this.counters = counters;
+        this.chunkSize = chunkSize;
+        this.initialCredit = initialCredit;
+        this.chunk = new ArrayList<>(chunkSize);
+    }
+
+    /**
+     * Completes once the last message of the stream was published, or fails if it could not be.
+     */
+    CompletableFuture<Void> published() {
+        return published;
+    }
+
+    void credit(int chunks) {
+        final Subscription subscription = this.subscription;
+        if(subscription != null && chunks > 0) subscription.request((long) chunks * chunkSize);
+    }
+
+    void cancel() {
+        final Subscription subscription = this.subscription;
+        if(subscription != null) subscription.cancel();
+        published.complete(null);
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        subscription = s;
+        s.request((long) initialCredit * chunkSize);
+    }
+
+    @Override
+    public void onNext(Object element) {
+        chunk.add(element);
+        if(chunk.size() >= chunkSize) {
+            final List<Object> full = chunk;
+            chunk = new ArrayList<>(chunkSize);
+            send(Protocol.STREAM_CHUNK_TYPE, new Protocol.InvokeReply(null, Protocol.InvokeReplyType.RESULT, null, null, full));
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        flush();
+        final Exception error = t instanceof Exception ? (Exception) t : new Exception(t);
+        end(new Protocol.InvokeReply(null, Protocol.InvokeReplyType.ERROR, error, null, null));
+    }
+
+    @Override
+    public void onComplete() {
+        flush();
+        end(new Protocol.InvokeReply(null, Protocol.InvokeReplyType.RESULT, null, null, null));
+    }
+
+    private void flush() {
+        if(chunk.isEmpty()) return;
+        send(Protocol.STREAM_CHUNK_TYPE, new Protocol.InvokeReply(null, Protocol.InvokeReplyType.RESULT, null, null, chunk));
+        chunk = Collections.emptyList();
+    }
+
+    private void end(Protocol.InvokeReply reply) {
+        send(Protocol.STREAM_END_TYPE, reply).whenComplete((v, t) -> {
+            if(t != null) published.completeExceptionally(t);
+            else published.complete(null);
+        });
+    }
+
+    private CompletableFuture<Void> send(String type, Protocol.InvokeReply reply) {
+        try {
+            final AMQP.BasicProperties.Builder props = new AMQP.BasicProperties.Builder()
+                    .correlationId(request.properties.getCorrelationId()).replyTo(link.controlAddress())
+                    .contentType(codec.contentType()).type(type)
+                    .headers(Collections.singletonMap(STREAM_ID_HEADER, streamId));
+            final byte[] body = codec.encodeReply(reply);
+            counters.published(body.length);
+            return link.replyInOrder(request, props, body).toCompletableFuture();
+        } catch (Exception e) {
+            Logger.error("Error streaming to client", e);
+            final Subscription subscription = this.subscription;
+            if(subscription != null) subscription.cancel();
+            final CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            published.completeExceptionally(e);
+            return failed;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+package jsonrpc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel for call deadlines. Scheduling and cancelling are O(1), expiring only walks the buckets
+ * of the ticks that elapsed. Deadlines are {@link System#nanoTime()} values.
+ *
+ * Not thread safe, it is meant to be owned by a single actor.
+ */
+public class TimingWheel<T> {
+    private final long tickNanos;
+    private final long startNanos;
+    private final Timeout<T>[] buckets;
+    private final int mask;
+    private long tick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickDuration, TimeUnit unit, int ticksPerWheel, long nowNanos) {
+        if(tickDuration <= 0) throw new IllegalArgumentException("tickDuration must be positive: " + tickDuration);
+        if(ticksPerWheel <= 0) throw new IllegalArgumentException("ticksPerWheel must be positive: " + ticksPerWheel);
+        int wheelSize = 1;
+        while(wheelSize < ticksPerWheel) wheelSize <<= 1;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.startNanos = nowNanos;
+        this.buckets = new Timeout[wheelSize];
+        this.mask = wheelSize - 1;
+    }
+
+    public Timeout<T> schedule(T item, long deadlineNanos) {
+        final Timeout<T> timeout = new Timeout<>(item, deadlineNanos);
+        final long deadlineTick = Math.max((deadlineNanos - startNanos + tickNanos - 1) / tickNanos, tick);
+        timeout.remainingRounds = (deadlineTick - tick) / buckets.length;
+        timeout.bucket = (int) (deadlineTick & mask);
+        final Timeout<T> head = buckets[timeout.bucket];
+        timeout.next = head;
+        if(head != null) head.prev = timeout;
+        buckets[timeout.bucket] = timeout;
+        size++;
+        return timeout;
+    }
+
+    public boolean cancel(Timeout<T> timeout) {
+        if(timeout == null || timeout.bucket < 0) return false;
+        unlink(timeout);
+        return true;
+    }
+
+    /**
+     * Advances the wheel up to {@code nowNanos} and hands every expired item to {@code onExpired}.
+     */
+    public void expire(long nowNanos, Consumer<T> onExpired) {
+        final long nowTick = (nowNanos - startNanos) / tickNanos;
+        while(tick <= nowTick) {
+            Timeout<T> timeout = buckets[(int) (tick & mask)];
+            while(timeout != null) {
+                final Timeout<T> next = timeout.next;
+                if(timeout.remainingRounds <= 0) {
+                    unlink(timeout);
+                    onExpired.accept(timeout.item);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+            tick++;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if(timeout.prev != null) timeout.prev.next = timeout.next;
+        else buckets[timeout.bucket] = timeout.next;
+        if(timeout.next != null) timeout.next.prev = timeout.prev;
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        size--;
+    }
+
+    public static class Timeout<T> {
+        public final T item;
+        public final long deadlineNanos;
+        private long remainingRounds;
+        private int bucket = -1;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T item, long deadlineNanos) {
+            this.item = item;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Timeout {" +
+                    "item: {" + item + '}' +
+                    ", deadlineNanos: " + deadlineNanos +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package jsonrpc;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import jsonrpc.models.Procedure;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+
+/**
+ * Resolves the Jackson types used to decode a procedure's arguments and result, once per procedure. Server side
+ * procedures are resolved from their reflected generic signature, client side ones from the canonical type names of
+ * the service descriptor, so nested generics such as {@code Map<String, List<Person>>} survive on both ends.
+ */
+public class TypeResolver {
+    private final TypeFactory typeFactory;
+
+    public TypeResolver(TypeFactory typeFactory) {
+        this.typeFactory = typeFactory;
+    }
+
+    public void resolve(Procedure procedure) {
+        if(procedure.getReturnJavaType() != null) return;
+        final Method method = procedure.getInternalMethod();
+        final JavaType[] parameterTypes = new JavaType[procedure.getArity()];
+        if(method != null) {
+            final Type[] genericTypes = method.getGenericParameterTypes();
+            for (int i = 0; i < parameterTypes.length; i++) {
+                parameterTypes[i] = typeFactory.constructType(genericTypes[i]);
+            }
+            procedure.setParameterJavaTypes(parameterTypes);
+            procedure.setReturnJavaType(resultType(typeFactory.constructType(method.getGenericReturnType())));
+        } else {
+            for (int i = 0; i < parameterTypes.length; i++) {
+                parameterTypes[i] = fromCanonical(procedure.getParameters().get(i).getType());
+            }
+            procedure.setParameterJavaTypes(parameterTypes);
+            procedure.setReturnJavaType(fromCanonical(procedure.getReturnType()));
+        }
+    }
+
+    private JavaType resultType(JavaType returnType) {
+        return returnType.containedTypeCount() > 0 ? returnType.containedType(0) : returnType;
+    }
+
+    private JavaType fromCanonical(String typeName) {
+        try {
+            return typeFactory.constructFromCanonical(typeName.replace(" ", ""));
+        } catch (IllegalArgumentException e) {
+            // Types the client cannot load still decode, as plain maps, lists and scalars
+            return TypeFactory.unknownType();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,11 @@
+package jsonrpc.codec;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+public class CborCodec extends JacksonCodec {
+    public static final String CONTENT_TYPE = "application/cbor";
+
+    public CborCodec() {
+        super(CONTENT_TYPE, newMapper(new CBORFactory()));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,49 @@
+package jsonrpc.codec;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jsonrpc.models.Protocol;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Wire format of RPC messages. The content type is advertised on every message so the other side can decode it,
+ * and servers answer with the codec the request came in.
+ */
+public interface Codec {
+    String contentType();
+
+    ObjectMapper mapper();
+
+    byte[] encode(Object value) throws IOException;
+
+    <T> T decode(byte[] body, Class<T> type) throws IOException;
+
+    byte[] encodeRequest(Protocol.RabbitMessage message) throws IOException;
+
+    /**
+     * Decodes a request straight into the parameter types of its procedure, looked up by method id.
+     */
+    Protocol.RabbitMessage decodeRequest(byte[] body, IntFunction<JavaType[]> parameterTypes) throws IOException;
+
+    byte[] encodeBatchRequest(List<Protocol.RabbitMessage> messages) throws IOException;
+
+    List<Protocol.RabbitMessage> decodeBatchRequest(byte[] body, IntFunction<JavaType[]> parameterTypes) throws IOException;
+
+    byte[] encodeReply(Protocol.InvokeReply reply) throws IOException;
+
+    /**
+     * Decodes a reply straight into the result type of the procedure that was called.
+     */
+    Protocol.InvokeReply decodeReply(byte[] body, JavaType resultType) throws IOException;
+
+    byte[] encodeBatchReply(List<Protocol.InvokeReply> replies) throws IOException;
+
+    /**
+     * Decodes a batch reply, looking up each entry's result type by its id.
+     */
+    List<Protocol.InvokeReply> decodeBatchReply(byte[] body, Function<String, JavaType> resultTypes) throws IOException;
+}
\ No newline at end of file
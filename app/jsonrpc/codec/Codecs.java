@@ -0,0 +1,40 @@
+package jsonrpc.codec;
+
+public class Codecs {
+    public static final Codec JSON = new JsonCodec();
+    public static final Codec SMILE = new SmileCodec();
+    public static final Codec CBOR = new CborCodec();
+
+    private Codecs() {
+    }
+
+    public static Codec forName(String name) {
+        switch (name.toLowerCase()) {
+            case "json":
+                return JSON;
+            case "smile":
+                return SMILE;
+            case "cbor":
+                return CBOR;
+            default:
+                throw new IllegalArgumentException("Unknown codec: " + name);
+        }
+    }
+
+    /**
+     * Codec for an incoming message, messages without a content type are plain JSON.
+     */
+    public static Codec forContentType(String contentType) {
+        if(contentType == null) return JSON;
+        switch (contentType) {
+            case JsonCodec.CONTENT_TYPE:
+                return JSON;
+            case SmileCodec.CONTENT_TYPE:
+                return SMILE;
+            case CborCodec.CONTENT_TYPE:
+                return CBOR;
+            default:
+                throw new IllegalArgumentException("Unsupported content type: " + contentType);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,248 @@
+package jsonrpc.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import jsonrpc.models.Protocol;
+import jsonrpc.models.ServiceDescriptor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Jackson based codec. Requests and replies are read token by token so arguments and results are bound directly to
+ * their target types, without an intermediate tree or String.
+ */
+public abstract class JacksonCodec implements Codec {
+    private static final JavaType UNKNOWN = TypeFactory.unknownType();
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final String contentType;
+    private final ObjectMapper mapper;
+    private final ObjectWriter requestWriter;
+    private final ObjectWriter replyWriter;
+    private final ObjectWriter batchRequestWriter;
+    private final ObjectWriter batchReplyWriter;
+
+    protected JacksonCodec(String contentType, ObjectMapper mapper) {
+        this.contentType = contentType;
+        this.mapper = mapper;
+        this.requestWriter = mapper.writerFor(Protocol.RabbitMessage.class);
+        this.replyWriter = mapper.writerFor(Protocol.InvokeReply.class);
+        this.batchRequestWriter = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, Protocol.RabbitMessage.class));
+        this.batchReplyWriter = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, Protocol.InvokeReply.class));
+    }
+
+    /**
+     * Mapper for a binary format, set up like Play's JSON mapper so every codec reads the same messages.
+     */
+    protected static ObjectMapper newMapper(JsonFactory factory) {
+        return new ObjectMapper(factory)
+                .findAndRegisterModules()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @Override
+    public String contentType() {
+        return contentType;
+    }
+
+    @Override
+    public ObjectMapper mapper() {
+        return mapper;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        return mapper.writeValueAsBytes(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] body, Class<T> type) throws IOException {
+        return mapper.readValue(body, type);
+    }
+
+    @Override
+    public byte[] encodeRequest(Protocol.RabbitMessage message) throws IOException {
+        return requestWriter.writeValueAsBytes(message);
+    }
+
+    @Override
+    public Protocol.RabbitMessage decodeRequest(byte[] body, IntFunction<JavaType[]> parameterTypes) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(body)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            return readRequest(parser, parameterTypes);
+        }
+    }
+
+    @Override
+    public byte[] encodeBatchRequest(List<Protocol.RabbitMessage> messages) throws IOException {
+        return batchRequestWriter.writeValueAsBytes(messages);
+    }
+
+    @Override
+    public List<Protocol.RabbitMessage> decodeBatchRequest(byte[] body, IntFunction<JavaType[]> parameterTypes) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(body)) {
+            expect(parser, parser.nextToken(), JsonToken.START_ARRAY);
+            final List<Protocol.RabbitMessage> messages = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                messages.add(readRequest(parser, parameterTypes));
+            }
+            return messages;
+        }
+    }
+
+    @Override
+    public byte[] encodeReply(Protocol.InvokeReply reply) throws IOException {
+        return replyWriter.writeValueAsBytes(reply);
+    }
+
+    @Override
+    public Protocol.InvokeReply decodeReply(byte[] body, JavaType resultType) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(body)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            return readReply(parser, id -> resultType, false);
+        }
+    }
+
+    @Override
+    public byte[] encodeBatchReply(List<Protocol.InvokeReply> replies) throws IOException {
+        return batchReplyWriter.writeValueAsBytes(replies);
+    }
+
+    @Override
+    public List<Protocol.InvokeReply> decodeBatchReply(byte[] body, Function<String, JavaType> resultTypes) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(body)) {
+            expect(parser, parser.nextToken(), JsonToken.START_ARRAY);
+            final List<Protocol.InvokeReply> replies = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                replies.add(readReply(parser, resultTypes, true));
+            }
+            return replies;
+        }
+    }
+
+    private Protocol.RabbitMessage readRequest(JsonParser parser, IntFunction<JavaType[]> parameterTypes) throws IOException {
+        String id = null;
+        String method = null;
+        Integer methodId = null;
+        Object[] args = null;
+        TokenBuffer bufferedArgs = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+            switch (field) {
+                case "id":
+                    id = parser.getValueAsString();
+                    break;
+                case "method":
+                    method = parser.getValueAsString();
+                    break;
+                case "methodId":
+                    methodId = token == JsonToken.VALUE_NULL ? null : parser.getIntValue();
+                    break;
+                case "args":
+                    if (methodId != null) {
+                        args = readArgs(parser, parameterTypes.apply(methodId));
+                    } else {
+                        // Only foreign encoders put args before methodId, keep the tokens until the types are known
+                        bufferedArgs = buffer(parser);
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (bufferedArgs != null) {
+            try (JsonParser argsParser = bufferedArgs.asParser(mapper)) {
+                argsParser.nextToken();
+                args = readArgs(argsParser, methodId != null ? parameterTypes.apply(methodId) : null);
+            }
+        }
+        return new Protocol.RabbitMessage(id, method, args != null ? args : NO_ARGS, methodId);
+    }
+
+    private Protocol.InvokeReply readReply(JsonParser parser, Function<String, JavaType> resultTypes, boolean keyed) throws IOException {
+        String id = null;
+        Protocol.InvokeReplyType replyType = null;
+        Exception error = null;
+        ServiceDescriptor serviceDescriptor = null;
+        Object result = null;
+        TokenBuffer bufferedResult = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+            switch (field) {
+                case "id":
+                    id = parser.getValueAsString();
+                    break;
+                case "replyType":
+                    replyType = token == JsonToken.VALUE_NULL ? null : Protocol.InvokeReplyType.valueOf(parser.getText());
+                    break;
+                case "error":
+                    error = mapper.readValue(parser, Exception.class);
+                    break;
+                case "serviceDescriptor":
+                    serviceDescriptor = mapper.readValue(parser, ServiceDescriptor.class);
+                    break;
+                case "result":
+                    if (keyed && id == null) bufferedResult = buffer(parser);
+                    else result = mapper.readValue(parser, resultType(resultTypes, id));
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (bufferedResult != null) {
+            try (JsonParser resultParser = bufferedResult.asParser(mapper)) {
+                resultParser.nextToken();
+                result = mapper.readValue(resultParser, resultType(resultTypes, id));
+            }
+        }
+        return new Protocol.InvokeReply(id, null, replyType, error, serviceDescriptor, result);
+    }
+
+    private static JavaType resultType(Function<String, JavaType> resultTypes, String id) {
+        final JavaType type = resultTypes.apply(id);
+        return type != null ? type : UNKNOWN;
+    }
+
+    private static TokenBuffer buffer(JsonParser parser) throws IOException {
+        final TokenBuffer buffer = new TokenBuffer(parser);
+        buffer.copyCurrentStructure(parser);
+        return buffer;
+    }
+
+    private Object[] readArgs(JsonParser parser, JavaType[] types) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) return NO_ARGS;
+        expect(parser, parser.getCurrentToken(), JsonToken.START_ARRAY);
+        final List<Object> args = new ArrayList<>(types != null ? types.length : 4);
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            final int i = args.size();
+            args.add(mapper.readValue(parser, types != null && i < types.length ? types[i] : UNKNOWN));
+        }
+        return args.toArray();
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Expected " + expected + " but found " + actual + " at " + parser.getCurrentLocation());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " {" +
+                "contentType: \"" + contentType + '"' +
+                '}';
+    }
+}
\ No newline at end of file
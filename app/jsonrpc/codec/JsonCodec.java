@@ -0,0 +1,104 @@
+package jsonrpc.codec;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jsonrpc.models.Protocol;
+import play.libs.Json;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * JSON through Play's mapper. The mapper is looked up on use rather than when the codec is created, so that a mapper
+ * the application sets with {@link Json#setObjectMapper} once it starts is the one used.
+ */
+public class JsonCodec implements Codec {
+    public static final String CONTENT_TYPE = "application/json";
+
+    private volatile Bound bound;
+
+    private Bound bound() {
+        final ObjectMapper mapper = Json.mapper();
+        final Bound current = bound;
+        if(current != null && current.mapper() == mapper) return current;
+        // Writers are prepared once per mapper, not on every message
+        final Bound rebound = new Bound(mapper);
+        bound = rebound;
+        return rebound;
+    }
+
+    @Override
+    public String contentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public ObjectMapper mapper() {
+        return Json.mapper();
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        return bound().encode(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] body, Class<T> type) throws IOException {
+        return bound().decode(body, type);
+    }
+
+    @Override
+    public byte[] encodeRequest(Protocol.RabbitMessage message) throws IOException {
+        return bound().encodeRequest(message);
+    }
+
+    @Override
+    public Protocol.RabbitMessage decodeRequest(byte[] body, IntFunction<JavaType[]> parameterTypes) throws IOException {
+        return bound().decodeRequest(body, parameterTypes);
+    }
+
+    @Override
+    public byte[] encodeBatchRequest(List<Protocol.RabbitMessage> messages) throws IOException {
+        return bound().encodeBatchRequest(messages);
+    }
+
+    @Override
+    public List<Protocol.RabbitMessage> decodeBatchRequest(byte[] body, IntFunction<JavaType[]> parameterTypes) throws IOException {
+        return bound().decodeBatchRequest(body, parameterTypes);
+    }
+
+    @Override
+    public byte[] encodeReply(Protocol.InvokeReply reply) throws IOException {
+        return bound().encodeReply(reply);
+    }
+
+    @Override
+    public Protocol.InvokeReply decodeReply(byte[] body, JavaType resultType) throws IOException {
+        return bound().decodeReply(body, resultType);
+    }
+
+    @Override
+    public byte[] encodeBatchReply(List<Protocol.InvokeReply> replies) throws IOException {
+        return bound().encodeBatchReply(replies);
+    }
+
+    @Override
+    public List<Protocol.InvokeReply> decodeBatchReply(byte[] body, Function<String, JavaType> resultTypes) throws IOException {
+        return bound().decodeBatchReply(body, resultTypes);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " {" +
+                "contentType: \"" + CONTENT_TYPE + '"' +
+                '}';
+    }
+
+    private static class Bound extends JacksonCodec {
+        private Bound(ObjectMapper mapper) {
+            super(CONTENT_TYPE, mapper);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,11 @@
+package jsonrpc.codec;
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+public class SmileCodec extends JacksonCodec {
+    public static final String CONTENT_TYPE = "application/x-jackson-smile";
+
+    public SmileCodec() {
+        super(CONTENT_TYPE, newMapper(new SmileFactory()));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,94 @@
+package jsonrpc.metrics;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and outcome counters of one procedure on one side. Histograms record microseconds with three
+ * significant digits and resize themselves, recording is wait free.
+ */
+public class ProcedureMetrics {
+    public final RpcMetrics.Side side;
+    public final String service;
+    public final String method;
+    public final int id;
+
+    final Histogram latency = new ConcurrentHistogram(3);
+    final Histogram queueWait = new ConcurrentHistogram(3);
+    final Histogram execution = new ConcurrentHistogram(3);
+    final LongAdder latencySum = new LongAdder();
+    final LongAdder queueWaitSum = new LongAdder();
+    final LongAdder executionSum = new LongAdder();
+    final LongAdder calls = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final LongAdder timeouts = new LongAdder();
+    final LongAdder coalesced = new LongAdder();
+    final LongAdder hedged = new LongAdder();
+    final LongAdder hedgeWins = new LongAdder();
+
+    ProcedureMetrics(RpcMetrics.Side side, String service, String method, int id) {
+        this.side = side;
+        this.service = service;
+        this.method = method;
+        this.id = id;
+    }
+
+    /**
+     * Records a finished call: the whole round trip on the client, receipt to reply on the server.
+     */
+    public void recordCall(long nanos, boolean error) {
+        calls.increment();
+        if(error) errors.increment();
+        record(latency, latencySum, nanos);
+    }
+
+    public void recordTimeout(long nanos) {
+        calls.increment();
+        timeouts.increment();
+        record(latency, latencySum, nanos);
+    }
+
+    /**
+     * Counts a call that joined an identical one already in flight instead of being sent.
+     */
+    public void recordCoalesced() {
+        coalesced.increment();
+    }
+
+    public void recordHedged() {
+        hedged.increment();
+    }
+
+    /**
+     * Counts a hedged call whose second request answered first.
+     */
+    public void recordHedgeWin() {
+        hedgeWins.increment();
+    }
+
+    /**
+     * The round trip latency below which {@code percentile} percent of the calls so far took, or -1 while fewer than
+     * {@code minSamples} calls were recorded.
+     */
+    public long latencyPercentileNanos(double percentile, long minSamples) {
+        if(latency.getTotalCount() < minSamples) return -1;
+        return TimeUnit.MICROSECONDS.toNanos(latency.getValueAtPercentile(percentile));
+    }
+
+    public void recordQueueWait(long nanos) {
+        record(queueWait, queueWaitSum, nanos);
+    }
+
+    public void recordExecution(long nanos) {
+        record(execution, executionSum, nanos);
+    }
+
+    private static void record(Histogram histogram, LongAdder sum, long nanos) {
+        final long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        histogram.recordValue(micros);
+        sum.add(micros);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,207 @@
+package jsonrpc.metrics;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import jsonrpc.Compression;
+import jsonrpc.ConcurrencyLimiter;
+import jsonrpc.RabbitConnection;
+import jsonrpc.RpcResultCache;
+import jsonrpc.models.Procedure;
+import jsonrpc.models.ServiceDescriptor;
+import org.HdrHistogram.Histogram;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Registry of every client and server metric, rendered in the Prometheus text exposition format by {@link #scrape()}.
+ */
+@Singleton
+public class RpcMetrics {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    public enum Side {
+        CLIENT, SERVER;
+
+        private final String label = name().toLowerCase(Locale.ROOT);
+    }
+
+    private final RabbitConnection rabbitConnection;
+    private final ConcurrentMap<String, ProcedureMetrics> procedures = new ConcurrentSkipListMap<>();
+    private final Map<Side, Counters> counters = new EnumMap<>(Side.class);
+    private final ConcurrentMap<String, ConcurrencyLimiter> limiters = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, RpcResultCache> caches = new ConcurrentSkipListMap<>();
+
+    @Inject
+    public RpcMetrics(RabbitConnection rabbitConnection) {
+        this.rabbitConnection = rabbitConnection;
+        for(Side side : Side.values()) counters.put(side, new Counters());
+    }
+
+    public Counters counters(Side side) {
+        return counters.get(side);
+    }
+
+    public ProcedureMetrics procedure(Side side, String service, Procedure procedure) {
+        final String key = side.label + '|' + service + '|' + procedure.getName() + '|' + procedure.getId();
+        return procedures.computeIfAbsent(key, k -> new ProcedureMetrics(side, service, procedure.getName(), procedure.getId()));
+    }
+
+    /**
+     * Metrics of every procedure of a service, indexed by procedure id.
+     */
+    public ProcedureMetrics[] procedures(Side side, ServiceDescriptor serviceDescriptor) {
+        final List<Procedure> list = serviceDescriptor.getProcedures();
+        int size = 0;
+        for(Procedure procedure : list) size = Math.max(size, procedure.getId() + 1);
+        final ProcedureMetrics[] metrics = new ProcedureMetrics[size];
+        for(Procedure procedure : list) {
+            metrics[procedure.getId()] = procedure(side, serviceDescriptor.getClassName(), procedure);
+        }
+        return metrics;
+    }
+
+    /**
+     * Exports the state of a client's limiter under the given client label.
+     */
+    public void limiter(String client, ConcurrencyLimiter limiter) {
+        limiters.put(client, limiter);
+    }
+
+    /**
+     * Exports the hits, misses and size of every region of a client's result cache under the given client label.
+     */
+    public void cache(String client, RpcResultCache cache) {
+        caches.put(client, cache);
+    }
+
+    public String scrape() {
+        final StringBuilder out = new StringBuilder(4096);
+        summary(out, "rpc_latency_seconds", "Client round trip or server receipt-to-reply time of calls", m -> m.latency, m -> m.latencySum);
+        summary(out, "rpc_queue_wait_seconds", "Time requests waited between the client publish and the start of execution", m -> m.queueWait, m -> m.queueWaitSum);
+        summary(out, "rpc_execution_seconds", "Time spent executing procedures on the server", m -> m.execution, m -> m.executionSum);
+        procedureCounter(out, "rpc_calls_total", "Finished calls", m -> m.calls);
+        procedureCounter(out, "rpc_errors_total", "Calls answered with an error", m -> m.errors);
+        procedureCounter(out, "rpc_timeouts_total", "Calls that timed out on the client", m -> m.timeouts);
+        procedureCounter(out, "rpc_coalesced_total", "Calls that took the reply of an identical call in flight", m -> m.coalesced);
+        procedureCounter(out, "rpc_hedged_total", "Calls sent a second time after waiting longer than most", m -> m.hedged);
+        procedureCounter(out, "rpc_hedge_wins_total", "Hedged calls answered first by the second request", m -> m.hedgeWins);
+        sideMetric(out, "rpc_in_flight", "gauge", "Calls sent or received and not yet answered", c -> c.inFlight);
+        sideMetric(out, "rpc_messages_in_total", "counter", "Messages received", c -> c.messagesIn);
+        sideMetric(out, "rpc_messages_out_total", "counter", "Messages published", c -> c.messagesOut);
+        sideMetric(out, "rpc_bytes_in_total", "counter", "Encoded body bytes received, before decompression", c -> c.bytesIn);
+        sideMetric(out, "rpc_bytes_out_total", "counter", "Encoded body bytes published, before compression", c -> c.bytesOut);
+        sideMetric(out, "rpc_expired_total", "counter", "Requests dropped unexecuted because their caller's deadline had passed", c -> c.expired);
+        limiterMetric(out, "rpc_client_limit", "gauge", "Calls each client may have in flight, 0 when unlimited", ConcurrencyLimiter::getMaxInFlight);
+        limiterMetric(out, "rpc_client_limit_in_flight", "gauge", "Calls holding a permit of the client's limiter", ConcurrencyLimiter::getInFlight);
+        limiterMetric(out, "rpc_client_limit_queued", "gauge", "Calls queued or waiting for a permit", ConcurrencyLimiter::getQueued);
+        limiterMetric(out, "rpc_client_limit_rejected_total", "counter", "Calls rejected by the client's limiter", ConcurrencyLimiter::getRejected);
+        cacheMetric(out, "rpc_client_cache_hits_total", "counter", "Calls answered from the client's result cache", RpcResultCache.Region::getHits);
+        cacheMetric(out, "rpc_client_cache_misses_total", "counter", "Cacheable calls the client's result cache could not answer", RpcResultCache.Region::getMisses);
+        cacheMetric(out, "rpc_client_cache_entries", "gauge", "Results held by the client's result cache", RpcResultCache.Region::size);
+        compression(out, rabbitConnection.getCompression());
+        return out.toString();
+    }
+
+    private void summary(StringBuilder out, String name, String help, Function<ProcedureMetrics, Histogram> histogram,
+                         Function<ProcedureMetrics, LongAdder> sum) {
+        header(out, name, "summary", help);
+        for(ProcedureMetrics metrics : procedures.values()) {
+            final Histogram snapshot = histogram.apply(metrics).copy();
+            if(snapshot.getTotalCount() == 0) continue;
+            for(double quantile : QUANTILES) {
+                sample(out, name, metrics, ",quantile=\"" + quantile + '"', snapshot.getValueAtPercentile(quantile * 100) / 1e6);
+            }
+            sample(out, name + "_sum", metrics, "", sum.apply(metrics).sum() / 1e6);
+            sample(out, name + "_count", metrics, "", snapshot.getTotalCount());
+        }
+    }
+
+    private void procedureCounter(StringBuilder out, String name, String help, Function<ProcedureMetrics, LongAdder> counter) {
+        header(out, name, "counter", help);
+        for(ProcedureMetrics metrics : procedures.values()) {
+            sample(out, name, metrics, "", counter.apply(metrics).sum());
+        }
+    }
+
+    private void sideMetric(StringBuilder out, String name, String type, String help, Function<Counters, LongAdder> counter) {
+        header(out, name, type, help);
+        for(Side side : Side.values()) {
+            out.append(name).append("{side=\"").append(side.label).append("\"} ").append(counter.apply(counters.get(side)).sum()).append('\n');
+        }
+    }
+
+    private void limiterMetric(StringBuilder out, String name, String type, String help, ToLongFunction<ConcurrencyLimiter> value) {
+        header(out, name, type, help);
+        limiters.forEach((client, limiter) ->
+                out.append(name).append("{client=\"").append(client).append("\"} ").append(value.applyAsLong(limiter)).append('\n'));
+    }
+
+    private void cacheMetric(StringBuilder out, String name, String type, String help, ToLongFunction<RpcResultCache.Region> value) {
+        header(out, name, type, help);
+        caches.forEach((client, cache) -> cache.getRegions().forEach((region, metrics) ->
+                out.append(name).append("{client=\"").append(client).append("\",region=\"").append(region).append("\"} ")
+                        .append(value.applyAsLong(metrics)).append('\n')));
+    }
+
+    private static void compression(StringBuilder out, Compression compression) {
+        header(out, "rpc_compressed_messages_total", "counter", "Bodies compressed before publishing");
+        out.append("rpc_compressed_messages_total ").append(compression.getCompressedMessages()).append('\n');
+        header(out, "rpc_compression_bytes_before_total", "counter", "Size of compressed bodies before compression");
+        out.append("rpc_compression_bytes_before_total ").append(compression.getBytesBeforeCompression()).append('\n');
+        header(out, "rpc_compression_bytes_after_total", "counter", "Size of compressed bodies after compression");
+        out.append("rpc_compression_bytes_after_total ").append(compression.getBytesAfterCompression()).append('\n');
+        header(out, "rpc_compression_ratio", "gauge", "Compressed over original size of all compressed bodies");
+        out.append("rpc_compression_ratio ").append(compression.getCompressionRatio()).append('\n');
+        header(out, "rpc_compress_seconds_total", "counter", "Time spent compressing bodies");
+        out.append("rpc_compress_seconds_total ").append(compression.getCompressNanos() / 1e9).append('\n');
+        header(out, "rpc_decompressed_messages_total", "counter", "Bodies decompressed on receipt");
+        out.append("rpc_decompressed_messages_total ").append(compression.getDecompressedMessages()).append('\n');
+        header(out, "rpc_decompress_seconds_total", "counter", "Time spent decompressing bodies");
+        out.append("rpc_decompress_seconds_total ").append(compression.getDecompressNanos() / 1e9).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, ProcedureMetrics metrics, String extraLabels, double value) {
+        out.append(name).append("{side=\"").append(metrics.side.label)
+                .append("\",service=\"").append(metrics.service)
+                .append("\",method=\"").append(metrics.method)
+                .append("\",id=\"").append(metrics.id).append('"')
+                .append(extraLabels).append("} ").append(value).append('\n');
+    }
+
+    /**
+     * Transport level counters of one side.
+     */
+    public static class Counters {
+        public final LongAdder inFlight = new LongAdder();
+        public final LongAdder messagesIn = new LongAdder();
+        public final LongAdder messagesOut = new LongAdder();
+        public final LongAdder bytesIn = new LongAdder();
+        public final LongAdder bytesOut = new LongAdder();
+        public final LongAdder expired = new LongAdder();
+
+        public void received(int bytes) {
+            messagesIn.increment();
+            bytesIn.add(bytes);
+        }
+
+        public void published(int bytes) {
+            messagesOut.increment();
+            bytesOut.add(bytes);
+        }
+    }
+}
\ No newline at end of file
@@ -1,31 +1,61 @@
 package jsonrpc.models;
 
 import akka.actor.ActorRef;
-import jsonrpc.ActorConsumer;
+import jsonrpc.TimingWheel;
 
-import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ActorConsumerHolder {
     public final Protocol.Invoke invoke;
+    public final Procedure procedure;
     public final ActorRef actor;
-    public final ActorConsumer consumer;
     public final String replyId;
-    public final Instant startTime;
+    public final long startTime;
+    public TimingWheel.Timeout<ActorConsumerHolder> timeout;
+    public long deadline;
+    public int replica;
+    public TimingWheel.Timeout<ActorConsumerHolder> hedge;
+    public String hedgeId;
+    public int hedgeReplica;
+    public long hedgedAt;
+    public String streamControl;
+    public String streamId;
+    public Object coalesceKey;
+    public String batchId;
+    private List<ActorRef> followers;
 
-    public ActorConsumerHolder(Protocol.Invoke invoke, ActorRef actor, ActorConsumer consumer, String replyId) {
+    public ActorConsumerHolder(Protocol.Invoke invoke, Procedure procedure, ActorRef actor, String replyId) {
         this.invoke = invoke;
+        this.procedure = procedure;
         this.actor = actor;
-        this.consumer = consumer;
         this.replyId = replyId;
-        this.startTime = Instant.now();
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Attaches another caller to this call, it gets the same reply.
+     */
+    public void follow(ActorRef follower) {
+        if(followers == null) followers = new ArrayList<>(2);
+        followers.add(follower);
+    }
+
+    public void reply(Object message, ActorRef sender) {
+        if(invoke.stream != null) {
+            invoke.stream.reply(message);
+            return;
+        }
+        actor.tell(message, sender);
+        if(followers != null) followers.forEach(follower -> follower.tell(message, sender));
     }
 
     @Override
     public String toString() {
         return "ActorConsumerHolder {" +
                 "invoke: {" + invoke + '}' +
+                ", procedure: {" + procedure + '}' +
                 ", actor: {" + actor + '}' +
-                ", consumer: {" + consumer + '}' +
                 ", replyId: \"" + replyId + '"' +
                 ", startTime: \"" + startTime + '"' +
                 '}';
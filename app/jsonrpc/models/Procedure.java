@@ -3,6 +3,7 @@ package jsonrpc.models;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JavaType;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -14,6 +15,8 @@ public class Procedure {
     private List<Parameter> parameters = new ArrayList<>();
     private String returnType;
     private Method method;
+    private JavaType[] parameterJavaTypes;
+    private JavaType returnJavaType;
 
     public Procedure() {
     }
@@ -71,6 +74,26 @@ public class Procedure {
         return method;
     }
 
+    @JsonIgnore
+    public JavaType[] getParameterJavaTypes() {
+        return parameterJavaTypes;
+    }
+
+    @JsonIgnore
+    public void setParameterJavaTypes(JavaType[] parameterJavaTypes) {
+        this.parameterJavaTypes = parameterJavaTypes;
+    }
+
+    @JsonIgnore
+    public JavaType getReturnJavaType() {
+        return returnJavaType;
+    }
+
+    @JsonIgnore
+    public void setReturnJavaType(JavaType returnJavaType) {
+        this.returnJavaType = returnJavaType;
+    }
+
     @JsonIgnore
     public int getArity() {
         return parameters.size();
@@ -1,33 +1,76 @@
 package jsonrpc.models;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Envelope;
+import jsonrpc.RemoteStream;
 
 import java.util.Arrays;
+import java.util.List;
 
 public class Protocol {
+    public static final String BATCH_TYPE = "rpc.batch";
+    public static final String STREAM_CHUNK_TYPE = "rpc.stream.chunk";
+    public static final String STREAM_END_TYPE = "rpc.stream.end";
+    public static final String STREAM_CREDIT_TYPE = "rpc.stream.credit";
+    public static final String STREAM_CANCEL_TYPE = "rpc.stream.cancel";
+
     public static class Invoke {
         public final String method;
         public final Object[] args;
+        public final int timeout;
+        public final boolean coalesce;
+        public final boolean oneWay;
+        public final boolean idempotent;
+        public final int priority;
+        @JsonIgnore
+        public final RemoteStream stream;
 
         public Invoke(String method, Object[] args) {
+            this(method, args, -1, false, false, false, 0, null);
+        }
+
+        /**
+         * @param timeout milliseconds the call may take, overriding the client's timeout when positive
+         * @param coalesce the call may share the reply of an identical call in flight
+         * @param oneWay publish without asking for a reply, the caller is answered once the request is accepted
+         * @param idempotent the call may be hedged, sent a second time when its reply is late
+         * @param priority the AMQP priority of the request, 0 for none
+         * @param stream receives the elements of a streaming call, which gets no other reply
+         */
+        public Invoke(String method, Object[] args, int timeout, boolean coalesce, boolean oneWay, boolean idempotent, int priority, RemoteStream stream) {
             this.method = method;
             this.args = args;
+            this.timeout = timeout;
+            this.coalesce = coalesce;
+            this.oneWay = oneWay;
+            this.idempotent = idempotent;
+            this.priority = priority;
+            this.stream = stream;
         }
 
         @Override
         public String toString() {
             return  "Invoke {" +
                     "method: '" + method + '\'' +
-                    ", args: " + Arrays.toString(args)
+                    ", args: " + Arrays.toString(args) +
+                    ", timeout: " + timeout +
+                    ", coalesce: " + coalesce +
+                    ", oneWay: " + oneWay +
+                    ", idempotent: " + idempotent +
+                    ", priority: " + priority +
+                    ", stream: " + (stream != null)
                     + '}';
         }
     }
 
+    @JsonPropertyOrder({"id", "method", "methodId", "args"})
     public static class RabbitMessage {
+        private String id;
         private String method;
         private Object[] args;
         private Integer methodId;
@@ -36,11 +79,25 @@ public class Protocol {
         }
 
         public RabbitMessage(String method, Object[] args, Integer methodId) {
+            this(null, method, args, methodId);
+        }
+
+        public RabbitMessage(String id, String method, Object[] args, Integer methodId) {
+            this.id = id;
             this.method = method;
             this.args = args;
             this.methodId = methodId;
         }
 
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
         public String getMethod() {
             return method;
         }
@@ -68,7 +125,8 @@ public class Protocol {
         @Override
         public String toString() {
             return "RabbitMessage {" +
-                    "method: \"" + method + '"' +
+                    "id: \"" + id + '"' +
+                    ", method: \"" + method + '"' +
                     ", args: [" + Arrays.toString(args) + ']' +
                     ", methodId: \"" + methodId + '"' +
                     '}';
@@ -80,13 +138,15 @@ public class Protocol {
         public final String consumerTag;
         public final Envelope envelope;
         public final AMQP.BasicProperties properties;
-        public final String body;
+        public final byte[] body;
+        public final long receivedAt;
 
-        public InvokeRabbitReply(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, String body) {
+        public InvokeRabbitReply(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
             this.consumerTag = consumerTag;
             this.envelope = envelope;
             this.properties = properties;
             this.body = body;
+            this.receivedAt = System.nanoTime();
         }
 
         @Override
@@ -95,7 +155,7 @@ public class Protocol {
                     "consumerTag: '" + consumerTag + '\'' +
                     ", envelope: " + envelope +
                     ", properties: " + properties +
-                    ", body: '" + body + '\'' +
+                    ", body: " + body.length + " bytes" +
                     '}';
         }
     }
@@ -106,7 +166,9 @@ public class Protocol {
         RESULT
     }
 
+    @JsonPropertyOrder({"id", "replyType"})
     public static class InvokeReply {
+        private String id;
         private Invoke invoke;
         private InvokeReplyType replyType;
         private Exception error;
@@ -115,9 +177,14 @@ public class Protocol {
 
         private static final String jsonRpcVersion = "3.0";
 
+        public InvokeReply(Invoke invoke, InvokeReplyType replyType, Exception error, ServiceDescriptor serviceDescriptor, Object result) {
+            this(null, invoke, replyType, error, serviceDescriptor, result);
+        }
+
         @JsonCreator
-        public InvokeReply(@JsonProperty("invoke") Invoke invoke, @JsonProperty("replyType") InvokeReplyType replyType, @JsonProperty("error") Exception error,
+        public InvokeReply(@JsonProperty("id") String id, @JsonProperty("invoke") Invoke invoke, @JsonProperty("replyType") InvokeReplyType replyType, @JsonProperty("error") Exception error,
                            @JsonProperty("serviceDescriptor") ServiceDescriptor serviceDescriptor, @JsonProperty("result") Object result) {
+            this.id = id;
             this.invoke = invoke;
             this.replyType = replyType;
             this.error = error;
@@ -125,6 +192,15 @@ public class Protocol {
             this.result = result;
         }
 
+        public InvokeReply withId(String id) {
+            return new InvokeReply(id, invoke, replyType, error, serviceDescriptor, result);
+        }
+
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        public String getId() {
+            return id;
+        }
+
         public Invoke getInvoke() {
             return invoke;
         }
@@ -152,7 +228,8 @@ public class Protocol {
         @Override
         public String toString() {
             return "InvokeReply {" +
-                    "invoke: {" + invoke + '}' +
+                    "id: \"" + id + '"' +
+                    ", invoke: {" + invoke + '}' +
                     ", replyType: \"" + replyType.toString() + '"' +
                     ", error: {" + error + '}' +
                     ", serviceDescriptor: {" + serviceDescriptor + '}' +
@@ -161,6 +238,103 @@ public class Protocol {
         }
     }
 
+    /**
+     * A server's answer to a request, sent to itself. {@code incarnation} names the server instance that received the
+     * request, a restarted server must not settle requests delivered to its predecessor.
+     */
+    public static class ServerReply {
+        public final Object incarnation;
+        public final InvokeRabbitReply request;
+        public final InvokeReply reply;
+        public final List<InvokeReply> batch;
+
+        public ServerReply(Object incarnation, InvokeRabbitReply request, InvokeReply reply) {
+            this(incarnation, request, reply, null);
+        }
+
+        public ServerReply(Object incarnation, InvokeRabbitReply request, List<InvokeReply> batch) {
+            this(incarnation, request, null, batch);
+        }
+
+        private ServerReply(Object incarnation, InvokeRabbitReply request, InvokeReply reply, List<InvokeReply> batch) {
+            this.incarnation = incarnation;
+            this.request = request;
+            this.reply = reply;
+            this.batch = batch;
+        }
+
+        @Override
+        public String toString() {
+            return "ServerReply {" +
+                    "request: " + request +
+                    ", reply: " + reply +
+                    ", batch: " + batch +
+                    '}';
+        }
+    }
+
+    public static class ReplySettled {
+        public final Object incarnation;
+        public final InvokeRabbitReply request;
+        public final Throwable failure;
+
+        public ReplySettled(Object incarnation, InvokeRabbitReply request, Throwable failure) {
+            this.incarnation = incarnation;
+            this.request = request;
+            this.failure = failure;
+        }
+
+        @Override
+        public String toString() {
+            return "ReplySettled {" +
+                    "request: " + request +
+                    ", failure: " + failure +
+                    '}';
+        }
+    }
+
+    public static class PublishFailed {
+        public final List<String> ids;
+        public final Throwable cause;
+
+        public PublishFailed(List<String> ids, Throwable cause) {
+            this.ids = ids;
+            this.cause = cause;
+        }
+
+        @Override
+        public String toString() {
+            return "PublishFailed {" +
+                    "ids: " + ids +
+                    ", cause: " + cause +
+                    '}';
+        }
+    }
+
+    /**
+     * Chunks of a streaming call the client is ready for, or its cancellation.
+     */
+    public static class StreamCredit {
+        public final String id;
+        public final int chunks;
+        public final boolean cancel;
+
+        public StreamCredit(String id, int chunks, boolean cancel) {
+            this.id = id;
+            this.chunks = chunks;
+            this.cancel = cancel;
+        }
+
+        @Override
+        public String toString() {
+            return "StreamCredit {" +
+                    "id: \"" + id + '"' +
+                    ", chunks: " + chunks +
+                    ", cancel: " + cancel +
+                    '}';
+        }
+    }
+
     public static class NullObject {
 
     }
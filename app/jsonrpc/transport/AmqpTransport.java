@@ -0,0 +1,191 @@
+package jsonrpc.transport;
+
+import akka.actor.ActorRef;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import jsonrpc.ActorConsumer;
+import jsonrpc.Compression;
+import jsonrpc.PublisherConfirms;
+import jsonrpc.RabbitConfig;
+import jsonrpc.RabbitConnection;
+import jsonrpc.models.Protocol;
+import play.Logger;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Transport over the RabbitMQ broker. Every client and server gets its own channel to consume on; replies are
+ * published on the pooled channels of {@link RabbitConnection}.
+ */
+public class AmqpTransport implements Transport {
+    private static final String DIRECT_REPLY_TO = "amq.rabbitmq.reply-to";
+
+    private final RabbitConnection rabbitConnection;
+    private final RabbitConfig rabbitConfig;
+    private final Compression compression;
+
+    public AmqpTransport(RabbitConnection rabbitConnection, RabbitConfig rabbitConfig) {
+        this.rabbitConnection = rabbitConnection;
+        this.rabbitConfig = rabbitConfig;
+        this.compression = rabbitConnection.getCompression();
+    }
+
+    @Override
+    public ClientLink connectClient(ActorRef client) throws IOException {
+        final Channel channel = createChannel();
+        try {
+            final String replyTo = declareReplyQueue(channel, rabbitConfig.isDirectReplyTo());
+            final PublisherConfirms confirms = rabbitConfig.isPublisherConfirms() ? new PublisherConfirms(channel) : null;
+            channel.basicConsume(replyTo, true, new ActorConsumer(channel, client));
+            return new AmqpClientLink(channel, replyTo, confirms);
+        } catch (IOException | RuntimeException e) {
+            close(channel);
+            throw e;
+        }
+    }
+
+    @Override
+    public ServerLink bindServer(String queueName, ActorRef server, int prefetch) throws IOException {
+        final Channel channel = createChannel();
+        try {
+            final int maxPriority = rabbitConfig.getServerMaxPriority();
+            if(maxPriority > 0) {
+                try {
+                    channel.queueDeclare(queueName, true, false, false, Collections.singletonMap("x-max-priority", maxPriority));
+                } catch (IOException e) {
+                    // Queue arguments are fixed at creation, the broker refuses the declaration with a 406
+                    throw new IOException("Cannot declare queue " + queueName + " with x-max-priority=" + maxPriority
+                            + ", it may exist with other arguments: delete it, or set rabbitmq.server.maxPriority=0", e);
+                }
+            }
+            channel.basicQos(prefetch);
+            channel.basicConsume(queueName, false, new ActorConsumer(channel, server));
+            // Stream control messages go to this very server, not whichever consumer of the queue is free
+            final String controlQueue = channel.queueDeclare().getQueue();
+            channel.basicConsume(controlQueue, true, new ActorConsumer(channel, server));
+            return new AmqpServerLink(channel, controlQueue);
+        } catch (IOException | RuntimeException e) {
+            close(channel);
+            throw e;
+        }
+    }
+
+    private Channel createChannel() throws IOException {
+        try {
+            return rabbitConnection.createChannel();
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out connecting to " + rabbitConfig.getRabbitHost(), e);
+        }
+    }
+
+    private static String declareReplyQueue(Channel channel, boolean directReplyTo) throws IOException {
+        // Direct reply-to needs no declaration, otherwise one exclusive queue serves every call of this client
+        if(directReplyTo) return DIRECT_REPLY_TO;
+        return channel.queueDeclare().getQueue();
+    }
+
+    private static void close(Channel channel) {
+        try {
+            if(channel.isOpen()) channel.close();
+        } catch (Exception e) {
+            Logger.error(e.toString());
+        }
+    }
+
+    private class AmqpClientLink implements ClientLink {
+        private final Channel channel;
+        private final String replyTo;
+        private final PublisherConfirms confirms;
+
+        private AmqpClientLink(Channel channel, String replyTo, PublisherConfirms confirms) {
+            this.channel = channel;
+            this.replyTo = replyTo;
+            this.confirms = confirms;
+        }
+
+        @Override
+        public String replyTo() {
+            return replyTo;
+        }
+
+        @Override
+        public CompletionStage<Void> publish(String exchange, String routingKey, AMQP.BasicProperties.Builder props, byte[] body) throws IOException {
+            final byte[] wireBody = compression.encode(body, props);
+            final AMQP.BasicProperties properties = props.build();
+            if(confirms == null) {
+                channel.basicPublish(exchange, routingKey, properties, wireBody);
+                return CompletableFuture.completedFuture(null);
+            }
+            final CompletableFuture<Void> confirmed = confirms.track();
+            try {
+                channel.basicPublish(exchange, routingKey, properties, wireBody);
+            } catch (IOException | RuntimeException e) {
+                confirms.untrack(confirmed);
+                throw e;
+            }
+            return confirmed;
+        }
+
+        @Override
+        public byte[] body(Protocol.InvokeRabbitReply reply) throws IOException {
+            return compression.decode(reply.body, reply.properties.getContentEncoding());
+        }
+
+        @Override
+        public void close() {
+            AmqpTransport.close(channel);
+        }
+    }
+
+    private class AmqpServerLink implements ServerLink {
+        private final Channel channel;
+        private final String controlQueue;
+
+        private AmqpServerLink(Channel channel, String controlQueue) {
+            this.channel = channel;
+            this.controlQueue = controlQueue;
+        }
+
+        @Override
+        public String controlAddress() {
+            return controlQueue;
+        }
+
+        @Override
+        public CompletionStage<Void> reply(Protocol.InvokeRabbitReply request, AMQP.BasicProperties.Builder props, byte[] body) throws IOException {
+            final byte[] wireBody = compression.encode(body, props);
+            return rabbitConnection.publish("", request.properties.getReplyTo(), props.build(), wireBody);
+        }
+
+        @Override
+        public CompletionStage<Void> replyInOrder(Protocol.InvokeRabbitReply request, AMQP.BasicProperties.Builder props, byte[] body) throws IOException {
+            final byte[] wireBody = compression.encode(body, props);
+            // Every reply to the request goes through the same pooled channel, so none overtakes another
+            return rabbitConnection.publishInOrder("", request.properties.getReplyTo(), props.build(), wireBody, System.identityHashCode(request));
+        }
+
+        @Override
+        public byte[] body(Protocol.InvokeRabbitReply request) throws IOException {
+            return compression.decode(request.body, request.properties.getContentEncoding());
+        }
+
+        @Override
+        public void ack(Protocol.InvokeRabbitReply request) throws IOException {
+            channel.basicAck(request.envelope.getDeliveryTag(), false);
+        }
+
+        @Override
+        public void reject(Protocol.InvokeRabbitReply request, boolean requeue) throws IOException {
+            channel.basicNack(request.envelope.getDeliveryTag(), false, requeue);
+        }
+
+        @Override
+        public void close() {
+            AmqpTransport.close(channel);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,206 @@
+package jsonrpc.transport;
+
+import akka.actor.ActorRef;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Envelope;
+import jsonrpc.models.Protocol;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands messages straight to actors in this JVM. Requests published on the default exchange to a queue some local
+ * server is bound to skip the broker, and so do their replies; everything else goes through {@code delegate}.
+ *
+ * Without a delegate it is a self-contained transport for tests and benchmarks.
+ */
+public class InProcessTransport implements Transport {
+    public static final String CONSUMER_TAG = "in-process";
+
+    private static final String REPLY_PREFIX = "in-process.reply.";
+    private static final String CONTROL_PREFIX = "in-process.control.";
+
+    private final Transport delegate;
+    private final Map<String, LocalQueue> queues = new ConcurrentHashMap<>();
+    private final Map<String, ActorRef> clients = new ConcurrentHashMap<>();
+    private final AtomicInteger nextClient = new AtomicInteger();
+    private final AtomicInteger nextServer = new AtomicInteger();
+    private final AtomicLong nextDeliveryTag = new AtomicLong();
+
+    /**
+     * @param delegate transport for queues without a local server, or null to only reach local servers
+     */
+    public InProcessTransport(Transport delegate) {
+        this.delegate = delegate;
+    }
+
+    public boolean isBound(String queueName) {
+        final LocalQueue queue = queues.get(queueName);
+        return queue != null && !queue.servers.isEmpty();
+    }
+
+    /**
+     * Waits for a server to bind {@code queueName}, servers binding once their actor has started.
+     */
+    public void awaitBound(String queueName, long timeoutMillis) throws InterruptedException, TimeoutException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while(!isBound(queueName)) {
+            if(System.nanoTime() >= deadline) throw new TimeoutException("No server bound to " + queueName + " within " + timeoutMillis + " ms");
+            Thread.sleep(10);
+        }
+    }
+
+    @Override
+    public ClientLink connectClient(ActorRef client) throws IOException {
+        final String localReplyTo = REPLY_PREFIX + nextClient.incrementAndGet();
+        final ClientLink remote = delegate != null ? delegate.connectClient(client) : null;
+        clients.put(localReplyTo, client);
+        return new LocalClientLink(localReplyTo, remote);
+    }
+
+    @Override
+    public ServerLink bindServer(String queueName, ActorRef server, int prefetch) throws IOException {
+        final ServerLink remote = delegate != null ? delegate.bindServer(queueName, server, prefetch) : null;
+        queues.computeIfAbsent(queueName, name -> new LocalQueue()).servers.add(server);
+        // Local clients reach the control address directly even when it names a broker queue
+        final String controlAddress = remote != null ? remote.controlAddress() : CONTROL_PREFIX + nextServer.incrementAndGet();
+        queues.computeIfAbsent(controlAddress, name -> new LocalQueue()).servers.add(server);
+        return new LocalServerLink(queueName, controlAddress, server, remote);
+    }
+
+    private static boolean isLocal(Protocol.InvokeRabbitReply message) {
+        return CONSUMER_TAG.equals(message.consumerTag);
+    }
+
+    private Protocol.InvokeRabbitReply delivery(String exchange, String routingKey, AMQP.BasicProperties props, byte[] body) {
+        return new Protocol.InvokeRabbitReply(CONSUMER_TAG, new Envelope(nextDeliveryTag.incrementAndGet(), false, exchange, routingKey), props, body);
+    }
+
+    private static class LocalQueue {
+        private final CopyOnWriteArrayList<ActorRef> servers = new CopyOnWriteArrayList<>();
+        private final AtomicInteger next = new AtomicInteger();
+
+        private ActorRef next() {
+            final int size = servers.size();
+            if(size == 0) return null;
+            try {
+                return servers.get(Math.floorMod(next.getAndIncrement(), size));
+            } catch (IndexOutOfBoundsException e) {
+                return null;
+            }
+        }
+    }
+
+    private class LocalClientLink implements ClientLink {
+        private final String localReplyTo;
+        private final ClientLink remote;
+
+        private LocalClientLink(String localReplyTo, ClientLink remote) {
+            this.localReplyTo = localReplyTo;
+            this.remote = remote;
+        }
+
+        @Override
+        public String replyTo() {
+            return remote != null ? remote.replyTo() : localReplyTo;
+        }
+
+        @Override
+        public CompletionStage<Void> publish(String exchange, String routingKey, AMQP.BasicProperties.Builder props, byte[] body) throws IOException {
+            final LocalQueue queue = exchange.isEmpty() ? queues.get(routingKey) : null;
+            final ActorRef server = queue != null ? queue.next() : null;
+            if(server != null) {
+                // One-way requests stay without a reply address
+                final AMQP.BasicProperties properties = props.build().getReplyTo() != null ? props.replyTo(localReplyTo).build() : props.build();
+                server.tell(delivery(exchange, routingKey, properties, body), ActorRef.noSender());
+                return CompletableFuture.completedFuture(null);
+            }
+            if(remote == null) throw new IOException("No server bound to " + routingKey + " in this JVM");
+            return remote.publish(exchange, routingKey, props, body);
+        }
+
+        @Override
+        public byte[] body(Protocol.InvokeRabbitReply reply) throws IOException {
+            return isLocal(reply) || remote == null ? reply.body : remote.body(reply);
+        }
+
+        @Override
+        public void close() {
+            clients.remove(localReplyTo);
+            if(remote != null) remote.close();
+        }
+    }
+
+    private class LocalServerLink implements ServerLink {
+        private final String queueName;
+        private final String controlAddress;
+        private final ActorRef server;
+        private final ServerLink remote;
+
+        private LocalServerLink(String queueName, String controlAddress, ActorRef server, ServerLink remote) {
+            this.queueName = queueName;
+            this.controlAddress = controlAddress;
+            this.server = server;
+            this.remote = remote;
+        }
+
+        @Override
+        public String controlAddress() {
+            return controlAddress;
+        }
+
+        @Override
+        public CompletionStage<Void> reply(Protocol.InvokeRabbitReply request, AMQP.BasicProperties.Builder props, byte[] body) throws IOException {
+            if(!isLocal(request)) return remote.reply(request, props, body);
+            final String replyTo = request.properties.getReplyTo();
+            final ActorRef client = clients.get(replyTo);
+            // The client went away, just like a reply to a deleted queue
+            if(client != null) client.tell(delivery("", replyTo, props.build(), body), ActorRef.noSender());
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public CompletionStage<Void> replyInOrder(Protocol.InvokeRabbitReply request, AMQP.BasicProperties.Builder props, byte[] body) throws IOException {
+            if(!isLocal(request)) return remote.replyInOrder(request, props, body);
+            // Messages one thread tells the client actor arrive in order
+            return reply(request, props, body);
+        }
+
+        @Override
+        public byte[] body(Protocol.InvokeRabbitReply request) throws IOException {
+            return isLocal(request) ? request.body : remote.body(request);
+        }
+
+        @Override
+        public void ack(Protocol.InvokeRabbitReply request) throws IOException {
+            if(!isLocal(request)) remote.ack(request);
+        }
+
+        @Override
+        public void reject(Protocol.InvokeRabbitReply request, boolean requeue) throws IOException {
+            if(!isLocal(request)) {
+                remote.reject(request, requeue);
+            } else if(requeue) {
+                final Envelope envelope = request.envelope;
+                server.tell(new Protocol.InvokeRabbitReply(CONSUMER_TAG, new Envelope(envelope.getDeliveryTag(), true, envelope.getExchange(), envelope.getRoutingKey()),
+                        request.properties, request.body), ActorRef.noSender());
+            }
+        }
+
+        @Override
+        public void close() {
+            final LocalQueue queue = queues.get(queueName);
+            if(queue != null) queue.servers.remove(server);
+            queues.remove(controlAddress);
+            if(remote != null) remote.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package jsonrpc.transport;
+
+import akka.actor.ActorRef;
+import com.rabbitmq.client.AMQP;
+import jsonrpc.models.Protocol;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Carries requests from clients to servers and replies back. Whatever the transport, messages reach the bound actor
+ * as {@link Protocol.InvokeRabbitReply}, and wire concerns such as compression and confirms stay inside it.
+ */
+public interface Transport {
+    /**
+     * Opens the link of one client; replies addressed to {@link ClientLink#replyTo()} are delivered to {@code client}.
+     */
+    ClientLink connectClient(ActorRef client) throws IOException;
+
+    /**
+     * Starts delivering requests sent to {@code queueName} to {@code server}, at most {@code prefetch} unacknowledged.
+     */
+    ServerLink bindServer(String queueName, ActorRef server, int prefetch) throws IOException;
+
+    interface ClientLink extends AutoCloseable {
+        String replyTo();
+
+        /**
+         * Sends a request. The stage completes once the transport has taken responsibility for it, which with
+         * publisher confirms means once the broker confirmed it, and fails if it was refused.
+         */
+        CompletionStage<Void> publish(String exchange, String routingKey, AMQP.BasicProperties.Builder props, byte[] body) throws IOException;
+
+        /**
+         * The body of a received reply as it was encoded by the server.
+         */
+        byte[] body(Protocol.InvokeRabbitReply reply) throws IOException;
+
+        @Override
+        void close();
+    }
+
+    interface ServerLink extends AutoCloseable {
+        /**
+         * Where clients send the credit and cancellation of streams served by this link, delivered to the server
+         * actor without acknowledgement.
+         */
+        String controlAddress();
+
+        /**
+         * Sends the reply to a request, completing like {@link ClientLink#publish}.
+         */
+        CompletionStage<Void> reply(Protocol.InvokeRabbitReply request, AMQP.BasicProperties.Builder props, byte[] body) throws IOException;
+
+        /**
+         * Sends one of several replies to a request, such as the chunks of a stream, which reach the client in the
+         * order they were sent.
+         */
+        CompletionStage<Void> replyInOrder(Protocol.InvokeRabbitReply request, AMQP.BasicProperties.Builder props, byte[] body) throws IOException;
+
+        /**
+         * The body of a received request as it was encoded by the client.
+         */
+        byte[] body(Protocol.InvokeRabbitReply request) throws IOException;
+
+        void ack(Protocol.InvokeRabbitReply request) throws IOException;
+
+        void reject(Protocol.InvokeRabbitReply request, boolean requeue) throws IOException;
+
+        @Override
+        void close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,42 @@
+package jsonrpc.transport;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import jsonrpc.RabbitConfig;
+import jsonrpc.RabbitConnection;
+
+/**
+ * Picks the transport named by {@code rabbitmq.transport}: "amqp" always goes through the broker, "in-process"
+ * short-circuits calls to servers in this JVM and uses the broker for the rest.
+ */
+@Singleton
+public class TransportProvider implements Provider<Transport> {
+    private final RabbitConnection rabbitConnection;
+    private final RabbitConfig rabbitConfig;
+    private Transport transport;
+
+    @Inject
+    public TransportProvider(RabbitConnection rabbitConnection, RabbitConfig rabbitConfig) {
+        this.rabbitConnection = rabbitConnection;
+        this.rabbitConfig = rabbitConfig;
+    }
+
+    @Override
+    public synchronized Transport get() {
+        if(transport == null) {
+            final AmqpTransport amqp = new AmqpTransport(rabbitConnection, rabbitConfig);
+            switch (rabbitConfig.getTransport()) {
+                case "amqp":
+                    transport = amqp;
+                    break;
+                case "in-process":
+                    transport = new InProcessTransport(amqp);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown transport: " + rabbitConfig.getTransport());
+            }
+        }
+        return transport;
+    }
+}
\ No newline at end of file
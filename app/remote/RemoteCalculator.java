@@ -1,8 +1,12 @@
 package remote;
 
+import jsonrpc.Priority;
+
 import java.util.concurrent.CompletionStage;
 
 public interface RemoteCalculator {
+	@Priority(Priority.INTERACTIVE)
 	CompletionStage<Integer> add(int a, int b);
+	@Priority(Priority.BULK)
 	CompletionStage<Void> longOperation(int timeout);
 }
\ No newline at end of file
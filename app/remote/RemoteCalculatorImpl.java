@@ -1,7 +1,12 @@
 package remote;
 
+import akka.actor.ActorSystem;
+import akka.actor.TypedActor;
+import scala.concurrent.duration.Duration;
+
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 public class RemoteCalculatorImpl implements RemoteCalculator {
 
@@ -12,9 +17,10 @@ public class RemoteCalculatorImpl implements RemoteCalculator {
 
 	@Override
 	public CompletionStage<Void> longOperation(int timeout) {
-		try {
-			Thread.sleep(timeout);
-		} catch (InterruptedException e) { }
-        return CompletableFuture.completedFuture(null);
+		// Wait on the scheduler instead of holding a thread for the whole operation
+		final CompletableFuture<Void> done = new CompletableFuture<>();
+		final ActorSystem system = TypedActor.context().system();
+		system.scheduler().scheduleOnce(Duration.create(timeout, TimeUnit.MILLISECONDS), () -> done.complete(null), system.dispatcher());
+		return done;
 	}
 }
\ No newline at end of file
@@ -1,5 +1,12 @@
 package remote;
 
+import akka.NotUsed;
+import akka.stream.javadsl.Source;
+import jsonrpc.Coalesce;
+import jsonrpc.Idempotent;
+import jsonrpc.Priority;
+import jsonrpc.RpcCacheEvict;
+import jsonrpc.RpcCacheable;
 import models.Person;
 
 import java.util.List;
@@ -7,12 +14,27 @@ import java.util.concurrent.CompletionStage;
 
 public interface RemotePersonRepository {
     //Test return types
+    @RpcCacheEvict("people")
     CompletionStage<Void> increasePeopleAgeByOne();
+    @Coalesce
+    @Idempotent
+    @Priority(Priority.INTERACTIVE)
+    @RpcCacheable(region = "people", ttl = 30)
     CompletionStage<Person> getPerson(int index);
+    @Coalesce
+    @Idempotent
+    @RpcCacheable(region = "people", ttl = 30)
     CompletionStage<List<Person>> getPeople();
+    Source<Person, NotUsed> getPeopleStream();
 
     //Test arg types
+    @RpcCacheEvict("people")
     CompletionStage<List<Person>> addPerson(Person person);
+    @Priority(Priority.BULK)
+    @RpcCacheEvict("people")
     CompletionStage<List<Person>> addPeople(List<Person> people);
+    @Coalesce
+    @Idempotent
+    @RpcCacheable(region = "people", ttl = 30)
     CompletionStage<List<Person>> getPeople(List<Integer> personIds);
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package remote;
 
+import akka.NotUsed;
+import akka.stream.javadsl.Source;
 import com.google.inject.Singleton;
 import models.Person;
 
@@ -40,6 +42,11 @@ public class RemotePersonRepositoryImpl implements RemotePersonRepository {
         return CompletableFuture.completedFuture(list);
     }
 
+    @Override
+    public Source<Person, NotUsed> getPeopleStream() {
+        return Source.from(new ArrayList<>(list));
+    }
+
     @Override
     public CompletionStage<List<Person>> addPerson(Person person) {
         list.add(person);
@@ -0,0 +1,74 @@
+package jsonrpc.benchmarks;
+
+import com.fasterxml.jackson.databind.JavaType;
+import jsonrpc.JsonRpcService;
+import jsonrpc.codec.Codec;
+import jsonrpc.codec.Codecs;
+import jsonrpc.models.Procedure;
+import jsonrpc.models.Protocol;
+import org.openjdk.jmh.annotations.*;
+import remote.RemotePersonRepository;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of requests and replies carrying {@code Person} lists of various sizes, in every wire format.
+ * {@link #decodeRequest()} is the server's argument binding, {@link #decodeReply()} the client's reply decoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    @Param({"1", "100", "10000"})
+    public int people;
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    private Codec codec;
+    private JavaType[] parameterTypes;
+    private JavaType returnType;
+    private Protocol.RabbitMessage request;
+    private Protocol.InvokeReply reply;
+    private byte[] encodedRequest;
+    private byte[] encodedReply;
+
+    @Setup
+    public void setup() throws IOException {
+        final JsonRpcService jsonRpcService = new JsonRpcService();
+        jsonRpcService.getServiceDescriptor(RemotePersonRepository.class);
+        final Procedure addPeople = jsonRpcService.getDispatchTable(RemotePersonRepository.class)
+                .resolve("addPeople", new Object[]{People.of(0)});
+        codec = Codecs.forName(format);
+        parameterTypes = addPeople.getParameterJavaTypes();
+        returnType = addPeople.getReturnJavaType();
+        request = new Protocol.RabbitMessage("1", "addPeople", new Object[]{People.of(people)}, addPeople.getId());
+        reply = new Protocol.InvokeReply(null, Protocol.InvokeReplyType.RESULT, null, null, People.of(people));
+        encodedRequest = codec.encodeRequest(request);
+        encodedReply = codec.encodeReply(reply);
+    }
+
+    @Benchmark
+    public byte[] encodeRequest() throws IOException {
+        return codec.encodeRequest(request);
+    }
+
+    @Benchmark
+    public Protocol.RabbitMessage decodeRequest() throws IOException {
+        return codec.decodeRequest(encodedRequest, id -> parameterTypes);
+    }
+
+    @Benchmark
+    public byte[] encodeReply() throws IOException {
+        return codec.encodeReply(reply);
+    }
+
+    @Benchmark
+    public Protocol.InvokeReply decodeReply() throws IOException {
+        return codec.decodeReply(encodedReply, returnType);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,67 @@
+package jsonrpc.benchmarks;
+
+import jsonrpc.DispatchTable;
+import jsonrpc.JsonRpcService;
+import jsonrpc.models.Procedure;
+import jsonrpc.models.ServiceDescriptor;
+import org.openjdk.jmh.annotations.*;
+import remote.RemotePersonRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service description and procedure lookup: building a descriptor, the two linear {@code findProcedure} overloads
+ * and the precompiled dispatch table that replaced them on the call path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DescriptorBenchmark {
+    private final JsonRpcService jsonRpcService = new JsonRpcService();
+    private ServiceDescriptor serviceDescriptor;
+    private DispatchTable dispatchTable;
+    private int getPeopleId;
+    private Object[] getPeopleArgs;
+
+    @Setup
+    public void setup() {
+        serviceDescriptor = jsonRpcService.getServiceDescriptor(RemotePersonRepository.class);
+        dispatchTable = jsonRpcService.getDispatchTable(RemotePersonRepository.class);
+        final List<Integer> ids = new ArrayList<>();
+        ids.add(1);
+        ids.add(3);
+        getPeopleArgs = new Object[]{ids};
+        getPeopleId = dispatchTable.resolve("getPeople", getPeopleArgs).getId();
+    }
+
+    @Benchmark
+    public ServiceDescriptor createServiceDescriptor() {
+        return jsonRpcService.createServiceDescriptor(RemotePersonRepository.class);
+    }
+
+    @Benchmark
+    public Optional<Procedure> findProcedureById() {
+        return jsonRpcService.findProcedure(serviceDescriptor, getPeopleId);
+    }
+
+    @Benchmark
+    public Optional<Procedure> findProcedureByName() {
+        return jsonRpcService.findProcedure(serviceDescriptor, "getPeople", getPeopleArgs);
+    }
+
+    @Benchmark
+    public Procedure dispatchTableProcedure() {
+        return dispatchTable.procedure(getPeopleId);
+    }
+
+    @Benchmark
+    public Procedure dispatchTableResolve() {
+        return dispatchTable.resolve("getPeople", getPeopleArgs);
+    }
+}
\ No newline at end of file
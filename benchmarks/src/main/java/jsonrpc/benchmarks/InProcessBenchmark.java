@@ -0,0 +1,78 @@
+package jsonrpc.benchmarks;
+
+import akka.actor.ActorSystem;
+import com.typesafe.config.ConfigFactory;
+import jsonrpc.JsonRpcFactoryImpl;
+import jsonrpc.JsonRpcService;
+import jsonrpc.RabbitConfig;
+import jsonrpc.RabbitConnection;
+import jsonrpc.metrics.RpcMetrics;
+import jsonrpc.transport.InProcessTransport;
+import models.Person;
+import org.openjdk.jmh.annotations.*;
+import play.Configuration;
+import remote.RemotePersonRepository;
+import remote.RemotePersonRepositoryImpl;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole call through the client and server actors over {@link InProcessTransport}, without a broker.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InProcessBenchmark {
+    private static final String QUEUE = "benchmark";
+
+    /**
+     * The call measured, as {@link RemotePersonRepository} declares it but without {@code @RpcCacheable}: every call
+     * makes the round trip instead of being answered by the client's cache.
+     */
+    public interface Uncached {
+        CompletionStage<List<Person>> getPeople(List<Integer> personIds);
+    }
+
+    @Param({"1", "100", "10000"})
+    public int people;
+
+    private ActorSystem system;
+    private Uncached repository;
+    private List<Integer> ids;
+
+    @Setup
+    public void setup() throws Exception {
+        system = ActorSystem.create("benchmark");
+        final RabbitConfig rabbitConfig = new RabbitConfig(new Configuration(ConfigFactory.load()));
+        final RabbitConnection rabbitConnection = new RabbitConnection(rabbitConfig, hook -> { });
+        final InProcessTransport transport = new InProcessTransport(null);
+        final JsonRpcFactoryImpl factory = new JsonRpcFactoryImpl(transport, rabbitConfig, system, new JsonRpcService(), new RpcMetrics(rabbitConnection));
+        factory.createServer(QUEUE, RemotePersonRepository.class, RemotePersonRepositoryImpl.class, 1);
+        transport.awaitBound(QUEUE, 10000);
+        factory.createClient(RemotePersonRepository.class, "", QUEUE).addPeople(People.of(people)).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        repository = factory.createClient(Uncached.class, "", QUEUE);
+        ids = new ArrayList<>(people);
+        for(int i = 0; i < people; i++) ids.add(i);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        system.terminate();
+        Await.result(system.whenTerminated(), Duration.create(10, TimeUnit.SECONDS));
+    }
+
+    @Benchmark
+    public List<Person> getPeople() {
+        final CompletableFuture<List<Person>> people = repository.getPeople(ids).toCompletableFuture();
+        return people.join();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,22 @@
+package jsonrpc.benchmarks;
+
+import models.Person;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class People {
+    private People() {
+    }
+
+    static List<Person> of(int size) {
+        final List<Person> people = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            final Person person = new Person();
+            person.setName("Person " + i);
+            person.setAge(20 + i % 60);
+            people.add(person);
+        }
+        return people;
+    }
+}
\ No newline at end of file
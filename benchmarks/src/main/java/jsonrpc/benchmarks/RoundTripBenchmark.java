@@ -0,0 +1,66 @@
+package jsonrpc.benchmarks;
+
+import jsonrpc.DispatchTable;
+import jsonrpc.JsonRpcService;
+import jsonrpc.codec.Codec;
+import jsonrpc.codec.Codecs;
+import jsonrpc.models.Procedure;
+import jsonrpc.models.Protocol;
+import org.openjdk.jmh.annotations.*;
+import remote.RemotePersonRepository;
+import remote.RemotePersonRepositoryImpl;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole call without the broker: the client encodes {@code getPeople(ids)}, the server decodes, dispatches and
+ * encodes the result, the client decodes the reply.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoundTripBenchmark {
+    @Param({"1", "100", "10000"})
+    public int people;
+
+    private final Codec codec = Codecs.JSON;
+    private DispatchTable dispatchTable;
+    private Procedure getPeople;
+    private MethodHandle invoker;
+    private RemotePersonRepository repository;
+    private Protocol.RabbitMessage request;
+
+    @Setup
+    public void setup() {
+        final JsonRpcService jsonRpcService = new JsonRpcService();
+        jsonRpcService.getServiceDescriptor(RemotePersonRepository.class);
+        dispatchTable = jsonRpcService.getDispatchTable(RemotePersonRepository.class);
+        repository = new RemotePersonRepositoryImpl();
+        repository.addPeople(People.of(people));
+        final List<Integer> ids = new ArrayList<>(people);
+        for(int i = 0; i < people; i++) ids.add(i);
+        final Object[] args = {ids};
+        getPeople = dispatchTable.resolve("getPeople", args);
+        invoker = dispatchTable.invoker(getPeople.getId());
+        request = new Protocol.RabbitMessage("1", "getPeople", args, getPeople.getId());
+    }
+
+    @Benchmark
+    public Object roundTrip() throws Throwable {
+        final byte[] requestBody = codec.encodeRequest(request);
+
+        final Protocol.RabbitMessage received = codec.decodeRequest(requestBody, id -> dispatchTable.procedure(id).getParameterJavaTypes());
+        final Object futureResult = invoker.invokeExact((Object) repository, received.getArgs());
+        final Object result = ((CompletionStage<?>) futureResult).toCompletableFuture().join();
+        final byte[] replyBody = codec.encodeReply(new Protocol.InvokeReply(null, Protocol.InvokeReplyType.RESULT, null, null, result));
+
+        return codec.decodeReply(replyBody, getPeople.getReturnJavaType()).getResult();
+    }
+}
\ No newline at end of file
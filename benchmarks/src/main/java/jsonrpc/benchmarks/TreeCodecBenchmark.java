@@ -0,0 +1,61 @@
+package jsonrpc.benchmarks;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import jsonrpc.JsonRpcService;
+import jsonrpc.codec.Codecs;
+import jsonrpc.models.Procedure;
+import jsonrpc.models.Protocol;
+import org.openjdk.jmh.annotations.*;
+import play.libs.Json;
+import remote.RemotePersonRepository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A JSON request round trip through the streaming codec against the former path, which went through a
+ * {@code JsonNode} tree and converted every argument afterwards. Run with {@code -prof gc} to compare the bytes
+ * allocated per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeCodecBenchmark {
+    @Param({"1", "50", "1000"})
+    public int people;
+
+    private JavaType[] parameterTypes;
+    private Protocol.RabbitMessage request;
+
+    @Setup
+    public void setup() {
+        final JsonRpcService jsonRpcService = new JsonRpcService();
+        jsonRpcService.getServiceDescriptor(RemotePersonRepository.class);
+        final Procedure addPeople = jsonRpcService.getDispatchTable(RemotePersonRepository.class)
+                .resolve("addPeople", new Object[]{People.of(0)});
+        parameterTypes = addPeople.getParameterJavaTypes();
+        request = new Protocol.RabbitMessage("1", "addPeople", new Object[]{People.of(people)}, addPeople.getId());
+    }
+
+    @Benchmark
+    public Protocol.RabbitMessage streaming() throws IOException {
+        return Codecs.JSON.decodeRequest(Codecs.JSON.encodeRequest(request), id -> parameterTypes);
+    }
+
+    @Benchmark
+    public Object[] tree() {
+        final byte[] body = Json.toJson(request).toString().getBytes(StandardCharsets.UTF_8);
+        final JsonNode root = Json.parse(new String(body, StandardCharsets.UTF_8));
+        final Protocol.RabbitMessage decoded = Json.fromJson(root, Protocol.RabbitMessage.class);
+        final Object[] args = new Object[parameterTypes.length];
+        for(int i = 0; i < parameterTypes.length; i++) {
+            args[i] = Json.mapper().convertValue(decoded.getArgs()[i], parameterTypes[i]);
+        }
+        return args;
+    }
+}
\ No newline at end of file
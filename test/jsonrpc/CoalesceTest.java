@@ -0,0 +1,185 @@
+package jsonrpc;
+
+import akka.actor.ActorRef;
+import com.rabbitmq.client.AMQP;
+import jsonrpc.models.Protocol;
+import jsonrpc.transport.InProcessTransport;
+import jsonrpc.transport.Transport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CoalesceTest {
+    private static final String QUEUE = "coalesce";
+
+    public interface Lookup {
+        @Coalesce
+        CompletionStage<String> lookup(String key);
+
+        @Coalesce
+        CompletionStage<String> check(Object value);
+    }
+
+    public static class LookupImpl implements Lookup {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final Map<String, CompletableFuture<String>> results = new ConcurrentHashMap<>();
+
+        @Override
+        public CompletionStage<String> lookup(String key) {
+            calls.incrementAndGet();
+            return result(key);
+        }
+
+        @Override
+        public CompletionStage<String> check(Object value) {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("checked");
+        }
+
+        private CompletableFuture<String> result(String key) {
+            return results.computeIfAbsent(key, k -> new CompletableFuture<>());
+        }
+    }
+
+    public static class Unwritable {
+        public String getValue() {
+            throw new IllegalStateException("Not serializable");
+        }
+    }
+
+    private InProcessFixture fixture;
+    private CountingTransport transport;
+    private LookupImpl impl;
+    private Lookup client;
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new InProcessFixture("coalesce");
+        final InProcessTransport local = new InProcessTransport(null);
+        transport = new CountingTransport(local);
+        impl = new LookupImpl();
+        client = fixture.connect(local, transport, QUEUE, Lookup.class, impl, 5000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Test
+    public void identicalCallsInFlightShareOneRequest() throws Exception {
+        final CompletableFuture<String> leader = client.lookup("a").toCompletableFuture();
+        final CompletableFuture<String> follower = client.lookup("a").toCompletableFuture();
+        final CompletableFuture<String> other = client.lookup("b").toCompletableFuture();
+        awaitCalls(2);
+        impl.result("a").complete("A");
+        impl.result("b").complete("B");
+        assertEquals("A", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("A", follower.get(5, TimeUnit.SECONDS));
+        assertEquals("B", other.get(5, TimeUnit.SECONDS));
+        assertEquals(2, transport.requests.get());
+        assertEquals(2, impl.calls.get());
+
+        // Once answered the call is no longer in flight and the next one is sent
+        impl.results.clear();
+        final CompletableFuture<String> later = client.lookup("a").toCompletableFuture();
+        awaitCalls(3);
+        impl.result("a").complete("A2");
+        assertEquals("A2", later.get(5, TimeUnit.SECONDS));
+        assertEquals(3, transport.requests.get());
+    }
+
+    @Test
+    public void followersGetTheErrorOfTheLeader() throws Exception {
+        final CompletableFuture<String> leader = client.lookup("a").toCompletableFuture();
+        final CompletableFuture<String> follower = client.lookup("a").toCompletableFuture();
+        awaitCalls(1);
+        impl.result("a").completeExceptionally(new IllegalStateException("failed"));
+        assertFails(leader);
+        assertFails(follower);
+        assertEquals(1, transport.requests.get());
+        assertEquals(1, impl.calls.get());
+    }
+
+    @Test
+    public void argumentsThatCannotBeWrittenOnlyFailTheirCall() throws Exception {
+        assertFails(client.check(new Unwritable()).toCompletableFuture());
+        assertEquals(0, impl.calls.get());
+        assertEquals("checked", client.check("value").toCompletableFuture().get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Waits for the server to be called, so that the results the calls wait for can be completed. Whether a duplicate
+     * was sent is told by the requests published, once every call has been answered.
+     */
+    private void awaitCalls(int calls) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(impl.calls.get() < calls) {
+            if(System.nanoTime() >= deadline) fail("The server got " + impl.calls.get() + " of " + calls + " calls");
+            Thread.sleep(10);
+        }
+    }
+
+    private static void assertFails(CompletableFuture<String> call) throws Exception {
+        try {
+            call.get(5, TimeUnit.SECONDS);
+            fail("Call succeeded");
+        } catch (ExecutionException expected) {
+        }
+    }
+
+    /**
+     * Counts the requests clients publish, leaving out the service descriptor they ask for when they start.
+     */
+    private static class CountingTransport implements Transport {
+        private final Transport delegate;
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private CountingTransport(Transport delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ClientLink connectClient(ActorRef client) throws IOException {
+            final ClientLink link = delegate.connectClient(client);
+            return new ClientLink() {
+                @Override
+                public String replyTo() {
+                    return link.replyTo();
+                }
+
+                @Override
+                public CompletionStage<Void> publish(String exchange, String routingKey, AMQP.BasicProperties.Builder props, byte[] body) throws IOException {
+                    if(!new String(body).contains("system.describe")) requests.incrementAndGet();
+                    return link.publish(exchange, routingKey, props, body);
+                }
+
+                @Override
+                public byte[] body(Protocol.InvokeRabbitReply reply) throws IOException {
+                    return link.body(reply);
+                }
+
+                @Override
+                public void close() {
+                    link.close();
+                }
+            };
+        }
+
+        @Override
+        public ServerLink bindServer(String queueName, ActorRef server, int prefetch) throws IOException {
+            return delegate.bindServer(queueName, server, prefetch);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package jsonrpc;
+
+import jsonrpc.codec.Codec;
+import jsonrpc.codec.Codecs;
+import jsonrpc.models.Procedure;
+import jsonrpc.models.Protocol;
+import jsonrpc.models.ServiceDescriptor;
+import models.Person;
+import org.junit.Test;
+import remote.RemotePersonRepository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Requests and replies survive encoding and decoding in every wire format, with arguments and results bound to
+ * their declared types. Allocations are measured by {@code CodecBenchmark} in the benchmarks project.
+ */
+public class CodecRoundTripTest {
+    private final JsonRpcService jsonRpcService = new JsonRpcService();
+    private final Procedure addPeople = findProcedure("addPeople");
+    private final Protocol.RabbitMessage message = new Protocol.RabbitMessage("1", "addPeople", new Object[]{people(50)}, addPeople.getId());
+
+    @Test
+    public void requestsDecodeToDeclaredTypes() throws IOException {
+        for (String format : new String[]{"json", "smile", "cbor"}) {
+            final Codec codec = Codecs.forName(format);
+            final Protocol.RabbitMessage decoded = codec.decodeRequest(codec.encodeRequest(message), id -> addPeople.getParameterJavaTypes());
+            assertEquals("1", decoded.getId());
+            assertEquals(addPeople.getId(), (int) decoded.getMethodId());
+            final List<?> people = (List<?>) decoded.getArgs()[0];
+            assertEquals(format, 50, people.size());
+            assertEquals(format, Person.class, people.get(0).getClass());
+            assertEquals(format, "Person 7", ((Person) people.get(7)).getName());
+            assertEquals(format, 27, ((Person) people.get(7)).getAge());
+        }
+    }
+
+    @Test
+    public void repliesDecodeToDeclaredTypes() throws IOException {
+        final Protocol.InvokeReply reply = new Protocol.InvokeReply(null, Protocol.InvokeReplyType.RESULT, null, null, people(3));
+        for (String format : new String[]{"json", "smile", "cbor"}) {
+            final Codec codec = Codecs.forName(format);
+            final Protocol.InvokeReply decoded = codec.decodeReply(codec.encodeReply(reply), addPeople.getReturnJavaType());
+            assertEquals(format, Protocol.InvokeReplyType.RESULT, decoded.getReplyType());
+            final List<?> people = (List<?>) decoded.getResult();
+            assertEquals(format, 3, people.size());
+            assertEquals(format, "Person 2", ((Person) people.get(2)).getName());
+        }
+    }
+
+    private Procedure findProcedure(String name) {
+        final ServiceDescriptor descriptor = jsonRpcService.getServiceDescriptor(RemotePersonRepository.class);
+        jsonRpcService.getDispatchTable(RemotePersonRepository.class);
+        return descriptor.getProcedures().stream().filter(p -> p.getName().equals(name)).findFirst().get();
+    }
+
+    private static List<Person> people(int count) {
+        final List<Person> people = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final Person person = new Person();
+            person.setName("Person " + i);
+            person.setAge(20 + i);
+            people.add(person);
+        }
+        return people;
+    }
+}
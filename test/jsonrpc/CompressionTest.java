@@ -0,0 +1,39 @@
+package jsonrpc;
+
+import com.rabbitmq.client.AMQP;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CompressionTest {
+
+    @Test
+    public void roundTripsCompressibleBodies() throws IOException {
+        final Compression compression = new Compression(1024);
+        final byte[] body = new byte[64 * 1024];
+        final AMQP.BasicProperties.Builder props = new AMQP.BasicProperties.Builder();
+        final byte[] encoded = compression.encode(body, props);
+        assertTrue(encoded.length < body.length);
+        assertEquals(Compression.GZIP, props.build().getContentEncoding());
+        assertArrayEquals(body, compression.decode(encoded, Compression.GZIP));
+    }
+
+    @Test
+    public void keepsBodiesThatDoNotShrink() throws IOException {
+        final Compression compression = new Compression(1024);
+        final byte[] body = new byte[4096];
+        new Random(1).nextBytes(body);
+        final AMQP.BasicProperties.Builder props = new AMQP.BasicProperties.Builder();
+        assertSame(body, compression.encode(body, props));
+        assertNull(props.build().getContentEncoding());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsBodiesInflatingPastTheLimit() throws IOException {
+        final byte[] bomb = new Compression(1).encode(new byte[1024 * 1024], new AMQP.BasicProperties.Builder());
+        new Compression(1, 64 * 1024).decode(bomb, Compression.GZIP);
+    }
+}
@@ -0,0 +1,66 @@
+package jsonrpc;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class ConcurrencyLimiterTest {
+
+    @Test
+    public void rejectsOverTheLimit() {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, ConcurrencyLimiter.Overflow.REJECT, 0, 0);
+        assertFalse(isRejected(limiter.acquire().toCompletableFuture()));
+        assertFalse(isRejected(limiter.acquire().toCompletableFuture()));
+        assertTrue(limiter.isSaturated());
+        assertTrue(isRejected(limiter.acquire().toCompletableFuture()));
+        assertEquals(1, limiter.getRejected());
+
+        limiter.release();
+        assertFalse(limiter.isSaturated());
+        assertFalse(isRejected(limiter.acquire().toCompletableFuture()));
+    }
+
+    @Test
+    public void queuedCallsTakeReleasedPermitsInOrder() {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, ConcurrencyLimiter.Overflow.QUEUE, 2, 0);
+        limiter.acquire();
+        final CompletableFuture<Void> first = limiter.acquire().toCompletableFuture();
+        final CompletableFuture<Void> second = limiter.acquire().toCompletableFuture();
+        assertTrue(isRejected(limiter.acquire().toCompletableFuture()));
+        assertEquals(2, limiter.getQueued());
+
+        limiter.release();
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+        assertEquals(1, limiter.getInFlight());
+
+        limiter.release();
+        assertTrue(second.isDone());
+        limiter.release();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void waitGivesUpAfterWaitMillis() {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, ConcurrencyLimiter.Overflow.WAIT, 0, 20);
+        limiter.acquire();
+        final long start = System.nanoTime();
+        assertTrue(isRejected(limiter.acquire().toCompletableFuture()));
+        assertTrue(System.nanoTime() - start >= 15_000_000L);
+    }
+
+    private static boolean isRejected(CompletableFuture<Void> permit) {
+        try {
+            permit.get();
+            return false;
+        } catch (ExecutionException e) {
+            return e.getCause() instanceof RejectedExecutionException;
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package jsonrpc;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ConsistentHashRingTest {
+
+    @Test
+    public void spreadsKeysOverAllShards() {
+        final ConsistentHashRing ring = new ConsistentHashRing(4);
+        final int[] counts = new int[4];
+        for (int i = 0; i < 10000; i++) {
+            counts[ring.shard(key(i))]++;
+        }
+        for (int count : counts) {
+            assertTrue("Uneven spread: " + count, count > 1500 && count < 3500);
+        }
+    }
+
+    @Test
+    public void addingAShardOnlyMovesKeysToIt() {
+        final ConsistentHashRing four = new ConsistentHashRing(4);
+        final ConsistentHashRing five = new ConsistentHashRing(5);
+        for (int i = 0; i < 10000; i++) {
+            final int before = four.shard(key(i));
+            final int after = five.shard(key(i));
+            assertTrue(after == before || after == 4);
+        }
+    }
+
+    @Test
+    public void singleShardKeepsThePlainQueueName() {
+        assertEquals("people", ConsistentHashRing.queueName("people", 0, 1));
+        assertEquals("people.2", ConsistentHashRing.queueName("people", 2, 3));
+        assertEquals(0, new ConsistentHashRing(1).shard(key(42)));
+    }
+
+    private static byte[] key(int i) {
+        return Integer.toString(i).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,43 @@
+package jsonrpc;
+
+import jsonrpc.models.Procedure;
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.CompletionStage;
+
+import static org.junit.Assert.*;
+
+public class DispatchTableTest {
+
+    public interface Directory {
+        CompletionStage<String> find(int id);
+
+        CompletionStage<String> find(String name);
+    }
+
+    private final Procedure byId = new Procedure(0, "find", new ArrayList<>(), "java.lang.String");
+    private final Procedure byName = new Procedure(1, "find", new ArrayList<>(), "java.lang.String");
+
+    @Test
+    public void primitiveParametersAcceptTheirBoxes() {
+        final DispatchTable table = table(new DispatchTable.Candidate(byName, new Class<?>[]{String.class}),
+                new DispatchTable.Candidate(byId, new Class<?>[]{int.class}));
+        assertSame(byId, table.resolve("find", new Object[]{7}));
+        assertSame(byName, table.resolve("find", new Object[]{"seven"}));
+        assertNull(table.resolve("find", new Object[]{7L}));
+    }
+
+    @Test
+    public void overloadsOfAnInterfaceResolveByArgument() {
+        final DispatchTable table = new JsonRpcService().getDispatchTable(Directory.class);
+        assertEquals("int", table.resolve("find", new Object[]{7}).getParameters().get(0).getType());
+        assertEquals("java.lang.String", table.resolve("find", new Object[]{"seven"}).getParameters().get(0).getType());
+    }
+
+    private static DispatchTable table(DispatchTable.Candidate... candidates) {
+        return new DispatchTable(new Procedure[0], new MethodHandle[0], Collections.singletonMap("find", new DispatchTable.Candidate[][]{null, candidates}));
+    }
+}
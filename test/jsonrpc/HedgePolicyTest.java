@@ -0,0 +1,32 @@
+package jsonrpc;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HedgePolicyTest {
+
+    @Test
+    public void hedgesAreEarnedByCalls() {
+        final HedgePolicy policy = new HedgePolicy(95, 5, TimeUnit.MILLISECONDS, 100, 0.25);
+        assertFalse(policy.tryHedge());
+        for (int i = 0; i < 4; i++) {
+            policy.called();
+        }
+        assertTrue(policy.tryHedge());
+        assertFalse(policy.tryHedge());
+    }
+
+    @Test
+    public void savedHedgesAreCapped() {
+        final HedgePolicy policy = new HedgePolicy(95, 5, TimeUnit.MILLISECONDS, 100, 1);
+        for (int i = 0; i < 1000; i++) {
+            policy.called();
+        }
+        int hedges = 0;
+        while (policy.tryHedge()) hedges++;
+        assertEquals(10, hedges);
+    }
+}
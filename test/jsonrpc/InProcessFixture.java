@@ -0,0 +1,50 @@
+package jsonrpc;
+
+import akka.actor.ActorSystem;
+import com.typesafe.config.ConfigFactory;
+import jsonrpc.codec.Codecs;
+import jsonrpc.metrics.RpcMetrics;
+import jsonrpc.transport.InProcessTransport;
+import jsonrpc.transport.Transport;
+import play.Configuration;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An actor system serving clients and servers over {@link InProcessTransport}, for tests that make whole calls
+ * without a broker.
+ */
+class InProcessFixture implements AutoCloseable {
+    final ActorSystem system;
+    final RabbitConfig rabbitConfig;
+    final JsonRpcService jsonRpcService;
+    final RpcMetrics rpcMetrics;
+
+    InProcessFixture(String name) {
+        system = ActorSystem.create(name);
+        rabbitConfig = new RabbitConfig(new Configuration(ConfigFactory.load()));
+        jsonRpcService = new JsonRpcService();
+        rpcMetrics = new RpcMetrics(new RabbitConnection(rabbitConfig, hook -> { }));
+    }
+
+    /**
+     * Serves {@code queue} with {@code impl} and returns a client of it, both going through {@code transport}, which
+     * ends up at {@code local}.
+     */
+    <T> T connect(InProcessTransport local, Transport transport, String queue, Class<T> iface, T impl, int timeout)
+            throws InterruptedException, TimeoutException {
+        system.actorOf(JsonRpcActorServer.props(transport, rabbitConfig, queue, iface, impl, jsonRpcService, rpcMetrics));
+        local.awaitBound(queue, 5000);
+        final JsonRpcFactoryImpl factory = new JsonRpcFactoryImpl(transport, rabbitConfig, system, jsonRpcService, rpcMetrics);
+        return factory.createClient(iface, "", queue, timeout, Codecs.JSON);
+    }
+
+    @Override
+    public void close() throws Exception {
+        system.terminate();
+        Await.result(system.whenTerminated(), Duration.create(10, TimeUnit.SECONDS));
+    }
+}
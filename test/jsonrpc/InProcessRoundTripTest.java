@@ -0,0 +1,195 @@
+package jsonrpc;
+
+import akka.actor.ActorRef;
+import com.rabbitmq.client.AMQP;
+import jsonrpc.models.Protocol;
+import jsonrpc.transport.InProcessTransport;
+import jsonrpc.transport.Transport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class InProcessRoundTripTest {
+    private static final String QUEUE = "round-trip";
+
+    public interface Echo {
+        CompletionStage<String> echo(String text);
+
+        @Idempotent
+        CompletionStage<String> read(String text);
+
+        CompletionStage<String> never();
+    }
+
+    public static class EchoImpl implements Echo {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public CompletionStage<String> echo(String text) {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(text);
+        }
+
+        @Override
+        public CompletionStage<String> read(String text) {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(text);
+        }
+
+        @Override
+        public CompletionStage<String> never() {
+            calls.incrementAndGet();
+            return new CompletableFuture<>();
+        }
+    }
+
+    private InProcessFixture fixture;
+    private EchoImpl impl;
+
+    @Before
+    public void setUp() {
+        fixture = new InProcessFixture("round-trip");
+        impl = new EchoImpl();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Test
+    public void repliesReachTheCaller() throws Exception {
+        final Echo echo = connect(new InProcessTransport(null), 5000);
+        assertEquals("hello", echo.echo("hello").toCompletableFuture().get(5, TimeUnit.SECONDS));
+        assertEquals("again", echo.echo("again").toCompletableFuture().get(5, TimeUnit.SECONDS));
+        assertEquals(2, impl.calls.get());
+    }
+
+    @Test
+    public void unansweredCallsTimeOut() throws Exception {
+        final Echo echo = connect(new InProcessTransport(null), 200);
+        assertTrue(failure(echo.never()) instanceof TimeoutException);
+        assertEquals(1, impl.calls.get());
+    }
+
+    @Test
+    public void idempotentRequestsWithALostReplyAreRequeued() throws Exception {
+        final InProcessTransport local = new InProcessTransport(null);
+        final LosingTransport transport = new LosingTransport(local, 1);
+        final Echo echo = connect(local, transport, 5000);
+        assertEquals("hello", echo.read("hello").toCompletableFuture().get(5, TimeUnit.SECONDS));
+        assertEquals(1, transport.requeued.get());
+        assertEquals(2, impl.calls.get());
+    }
+
+    @Test
+    public void otherRequestsWithALostReplyAreNotExecutedAgain() throws Exception {
+        final InProcessTransport local = new InProcessTransport(null);
+        final LosingTransport transport = new LosingTransport(local, 1);
+        final Echo echo = connect(local, transport, 500);
+        assertTrue(failure(echo.echo("hello")) instanceof TimeoutException);
+        assertEquals(0, transport.requeued.get());
+        assertEquals(1, impl.calls.get());
+    }
+
+    private Echo connect(InProcessTransport transport, int timeout) throws Exception {
+        return connect(transport, transport, timeout);
+    }
+
+    private Echo connect(InProcessTransport local, Transport transport, int timeout) throws Exception {
+        return fixture.connect(local, transport, QUEUE, Echo.class, impl, timeout);
+    }
+
+    private static Throwable failure(CompletionStage<?> call) throws Exception {
+        try {
+            call.toCompletableFuture().get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while(cause instanceof RuntimeException && cause.getCause() != null) cause = cause.getCause();
+            return cause;
+        }
+        fail("Call succeeded");
+        return null;
+    }
+
+    /**
+     * Fails the first {@code losses} replies of the server, as a nacked reply would.
+     */
+    private static class LosingTransport implements Transport {
+        private final Transport delegate;
+        private final AtomicInteger losses;
+        private final AtomicInteger requeued = new AtomicInteger();
+
+        private LosingTransport(Transport delegate, int losses) {
+            this.delegate = delegate;
+            this.losses = new AtomicInteger(losses);
+        }
+
+        @Override
+        public ClientLink connectClient(ActorRef client) throws IOException {
+            return delegate.connectClient(client);
+        }
+
+        @Override
+        public ServerLink bindServer(String queueName, ActorRef server, int prefetch) throws IOException {
+            final ServerLink link = delegate.bindServer(queueName, server, prefetch);
+            return new ServerLink() {
+                @Override
+                public String controlAddress() {
+                    return link.controlAddress();
+                }
+
+                @Override
+                public CompletionStage<Void> reply(Protocol.InvokeRabbitReply request, AMQP.BasicProperties.Builder props, byte[] body) throws IOException {
+                    // The service descriptor must get through for the client to start
+                    if(props.build().getType() == null && !isDescribe(request) && losses.getAndDecrement() > 0) {
+                        final CompletableFuture<Void> nacked = new CompletableFuture<>();
+                        nacked.completeExceptionally(new IOException("Reply nacked"));
+                        return nacked;
+                    }
+                    return link.reply(request, props, body);
+                }
+
+                @Override
+                public CompletionStage<Void> replyInOrder(Protocol.InvokeRabbitReply request, AMQP.BasicProperties.Builder props, byte[] body) throws IOException {
+                    return link.replyInOrder(request, props, body);
+                }
+
+                @Override
+                public byte[] body(Protocol.InvokeRabbitReply request) throws IOException {
+                    return link.body(request);
+                }
+
+                @Override
+                public void ack(Protocol.InvokeRabbitReply request) throws IOException {
+                    link.ack(request);
+                }
+
+                @Override
+                public void reject(Protocol.InvokeRabbitReply request, boolean requeue) throws IOException {
+                    if(requeue) requeued.incrementAndGet();
+                    link.reject(request, requeue);
+                }
+
+                @Override
+                public void close() {
+                    link.close();
+                }
+            };
+        }
+
+        private static boolean isDescribe(Protocol.InvokeRabbitReply request) {
+            return new String(request.body).contains("system.describe");
+        }
+    }
+}
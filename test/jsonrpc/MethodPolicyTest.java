@@ -0,0 +1,55 @@
+package jsonrpc;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MethodPolicyTest {
+
+    public interface Service {
+        @OneWay
+        CompletionStage<Void> publish(String event);
+
+        @OneWay
+        @RpcCacheEvict("events")
+        CompletionStage<Void> record(String event);
+    }
+
+    public interface Catalog {
+        @RpcCacheable(region = "items", ttl = 1, unit = TimeUnit.MINUTES)
+        CompletionStage<String> item(int id);
+
+        @RpcCacheable(region = "items", ttl = 5, unit = TimeUnit.MINUTES)
+        CompletionStage<String> items(String query);
+    }
+
+    @Test
+    public void oneWayCallsCanBeSent() throws Exception {
+        final MethodPolicy policy = new MethodPolicy(Service.class.getMethod("publish", String.class));
+        assertTrue(policy.oneWay);
+        assertEquals(0, policy.evictRegions.length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void oneWayCallsCannotEvict() throws Exception {
+        new MethodPolicy(Service.class.getMethod("record", String.class));
+    }
+
+    @Test
+    public void everyMethodOfAnInterfaceIsCheckedUpFront() {
+        try {
+            MethodPolicy.forInterface(Service.class);
+            fail("Conflicting annotations accepted");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("record"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void methodsSharingACacheRegionNeedTheSameBounds() {
+        MethodPolicy.forInterface(Catalog.class);
+    }
+}
@@ -0,0 +1,174 @@
+package jsonrpc;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.japi.pf.ReceiveBuilder;
+import jsonrpc.models.Protocol;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RemoteStreamTest {
+
+    public static class Probe extends AbstractActor {
+        public Probe(BlockingQueue<Object> received) {
+            receive(ReceiveBuilder.matchAny(received::add).build());
+        }
+    }
+
+    private static class Recorder implements Subscriber<Object> {
+        private final List<Object> elements = new ArrayList<>();
+        private Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+        }
+
+        @Override
+        public void onNext(Object element) {
+            elements.add(element);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private ActorSystem system;
+    private BlockingQueue<Object> received;
+    private RemoteStream stream;
+    private Recorder recorder;
+
+    @Before
+    public void setUp() {
+        system = ActorSystem.create("remote-stream");
+        received = new LinkedBlockingQueue<>();
+        stream = new RemoteStream();
+        stream.bind(system.actorOf(Props.create(Probe.class, received)), "7");
+        recorder = new Recorder();
+        stream.subscribe(recorder);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        system.terminate();
+        Await.result(system.whenTerminated(), Duration.create(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void emitsOnlyRequestedElements() {
+        stream.chunk(Arrays.asList(1, 2));
+        stream.chunk(Arrays.asList(3, 4));
+        assertTrue(recorder.elements.isEmpty());
+        assertFalse(stream.isWaiting());
+        recorder.subscription.request(3);
+        assertEquals(Arrays.asList(1, 2, 3), recorder.elements);
+        recorder.subscription.request(2);
+        assertEquals(Arrays.asList(1, 2, 3, 4), recorder.elements);
+        assertTrue(stream.isWaiting());
+        assertFalse(recorder.completed);
+    }
+
+    @Test
+    public void consumedChunksAreCreditedBack() throws Exception {
+        recorder.subscription.request(Long.MAX_VALUE);
+        stream.chunk(Arrays.asList(1, 2));
+        assertCredit(1);
+        stream.chunk(Arrays.asList(3));
+        assertCredit(1);
+    }
+
+    @Test
+    public void completesOnceTheFinalChunkIsConsumed() {
+        stream.chunk(Arrays.asList(1, 2));
+        stream.reply(new Protocol.NullObject());
+        recorder.subscription.request(1);
+        assertFalse(recorder.completed);
+        recorder.subscription.request(1);
+        assertEquals(Arrays.asList(1, 2), recorder.elements);
+        assertTrue(recorder.completed);
+        assertNull(recorder.error);
+    }
+
+    @Test
+    public void failsAfterTheElementsThatArrived() {
+        recorder.subscription.request(10);
+        stream.chunk(Arrays.asList(1));
+        final IllegalStateException failure = new IllegalStateException("Server failed");
+        stream.reply(failure);
+        assertEquals(Arrays.asList(1), recorder.elements);
+        assertSame(failure, recorder.error);
+        assertFalse(recorder.completed);
+    }
+
+    @Test
+    public void cancellingStopsElementsAndTellsTheClient() throws Exception {
+        recorder.subscription.request(10);
+        recorder.subscription.cancel();
+        stream.chunk(Arrays.asList(1));
+        assertTrue(recorder.elements.isEmpty());
+        assertTrue(stream.isCancelled());
+        final Protocol.StreamCredit cancel = (Protocol.StreamCredit) received.poll(5, TimeUnit.SECONDS);
+        assertEquals("7", cancel.id);
+        assertTrue(cancel.cancel);
+    }
+
+    @Test
+    public void nonPositiveRequestsFailTheStream() throws Exception {
+        recorder.subscription.request(0);
+        assertTrue(recorder.error instanceof IllegalArgumentException);
+        assertTrue(((Protocol.StreamCredit) received.poll(5, TimeUnit.SECONDS)).cancel);
+    }
+
+    @Test
+    public void onlyOneSubscriberIsAllowed() {
+        final Recorder second = new Recorder();
+        stream.subscribe(second);
+        assertTrue(second.error instanceof IllegalStateException);
+        assertNull(recorder.error);
+    }
+
+    @Test
+    public void terminationRunsItsActionOnce() {
+        final AtomicInteger runs = new AtomicInteger();
+        stream.onTerminate(runs::incrementAndGet);
+        stream.reply(new Protocol.NullObject());
+        recorder.subscription.cancel();
+        assertEquals(1, runs.get());
+
+        stream.onTerminate(runs::incrementAndGet);
+        assertEquals(2, runs.get());
+    }
+
+    private void assertCredit(int chunks) throws InterruptedException {
+        final Protocol.StreamCredit credit = (Protocol.StreamCredit) received.poll(5, TimeUnit.SECONDS);
+        assertEquals("7", credit.id);
+        assertEquals(chunks, credit.chunks);
+        assertFalse(credit.cancel);
+    }
+}
@@ -0,0 +1,58 @@
+package jsonrpc;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ReplicaBalancerTest {
+
+    @Test
+    public void prefersTheReplicaWithFewerOutstandingCalls() {
+        final ReplicaBalancer balancer = new ReplicaBalancer(new String[]{"a", "b"}, ReplicaBalancer.Strategy.LEAST_OUTSTANDING, new Random(1));
+        balancer.started(0);
+        balancer.started(0);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(1, balancer.choose());
+        }
+        balancer.finished(0, 1000, 0);
+        balancer.finished(0, 1000, 0);
+        balancer.started(1);
+        assertEquals(0, balancer.choose());
+    }
+
+    @Test
+    public void ewmaAvoidsSlowAndFailingReplicas() {
+        final ReplicaBalancer balancer = new ReplicaBalancer(new String[]{"a", "b", "c"}, ReplicaBalancer.Strategy.forName("ewma"), new Random(1));
+        balancer.started(0);
+        balancer.finished(0, 50_000_000L, 0);
+        balancer.started(1);
+        balancer.finished(1, 1_000_000L, 0);
+        balancer.failed(2, 0);
+        final int[] chosen = new int[3];
+        for (int i = 0; i < 300; i++) {
+            chosen[balancer.choose()]++;
+        }
+        assertTrue(chosen[1] > chosen[0]);
+        assertEquals(0, chosen[2]);
+    }
+
+    @Test
+    public void chooseOtherAvoidsTheExcludedReplica() {
+        final ReplicaBalancer balancer = new ReplicaBalancer(new String[]{"a", "b", "c", "d"}, ReplicaBalancer.Strategy.LEAST_OUTSTANDING, new Random(1));
+        final int[] chosen = new int[4];
+        for (int i = 0; i < 400; i++) {
+            chosen[balancer.chooseOther(2)]++;
+        }
+        assertEquals(0, chosen[2]);
+        assertTrue(chosen[0] > 0 && chosen[1] > 0 && chosen[3] > 0);
+    }
+
+    @Test
+    public void singleReplicaIsAlwaysChosen() {
+        final ReplicaBalancer balancer = new ReplicaBalancer(new String[]{"only"}, ReplicaBalancer.Strategy.EWMA, new Random());
+        assertEquals(0, balancer.choose());
+        assertEquals("only", balancer.routingKey(0));
+    }
+}
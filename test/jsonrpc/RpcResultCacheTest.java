@@ -0,0 +1,73 @@
+package jsonrpc;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RpcResultCacheTest {
+    private final RpcResultCache cache = new RpcResultCache();
+    private final Method method;
+
+    public RpcResultCacheTest() throws NoSuchMethodException {
+        method = String.class.getMethod("valueOf", int.class);
+    }
+
+    @Test
+    public void entriesExpireAfterTheirTtl() throws Exception {
+        final RpcResultCache.Region region = cache.region("ttl", TimeUnit.MILLISECONDS.toNanos(50), 10);
+        final RpcResultCache.Key key = cache.key(method, new Object[]{1});
+        region.put(key, "one", region.generation());
+        assertEquals("one", region.get(cache.key(method, new Object[]{1})).value);
+        Thread.sleep(100);
+        assertNull(region.get(key));
+        assertEquals(0, region.size());
+        assertEquals(1, region.getHits());
+        assertEquals(1, region.getMisses());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreDroppedOverTheBound() throws Exception {
+        final RpcResultCache.Region region = cache.region("lru", TimeUnit.MINUTES.toNanos(1), 2);
+        final RpcResultCache.Key first = cache.key(method, new Object[]{1});
+        final RpcResultCache.Key second = cache.key(method, new Object[]{2});
+        final RpcResultCache.Key third = cache.key(method, new Object[]{3});
+        region.put(first, "one", region.generation());
+        region.put(second, "two", region.generation());
+        assertNotNull(region.get(first));
+        region.put(third, "three", region.generation());
+        assertEquals(2, region.size());
+        assertNotNull(region.get(first));
+        assertNull(region.get(second));
+        assertNotNull(region.get(third));
+    }
+
+    @Test
+    public void resultsFetchedBeforeAnEvictionAreNotCached() throws Exception {
+        final RpcResultCache.Region region = cache.region("people", TimeUnit.MINUTES.toNanos(1), 10);
+        final RpcResultCache.Key key = cache.key(method, new Object[]{1});
+        final long generation = region.generation();
+        cache.evict("people");
+        region.put(key, "stale", generation);
+        assertNull(region.get(key));
+
+        region.put(key, "fresh", region.generation());
+        assertEquals("fresh", region.get(key).value);
+        cache.evict("people");
+        assertNull(region.get(key));
+    }
+
+    @Test
+    public void regionsAreSharedByUsersWithTheSameBounds() {
+        final RpcResultCache.Region region = cache.region("people", TimeUnit.MINUTES.toNanos(1), 10);
+        assertSame(region, cache.region("people", TimeUnit.MINUTES.toNanos(1), 10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void regionsRejectOtherBounds() {
+        cache.region("people", TimeUnit.MINUTES.toNanos(1), 10);
+        cache.region("people", 1, 1);
+    }
+}
@@ -0,0 +1,54 @@
+package jsonrpc;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelTest {
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    public void expiresOnlyDueItems() {
+        final TimingWheel<String> wheel = new TimingWheel<>(10, TimeUnit.MILLISECONDS, 8, 0);
+        wheel.schedule("a", 3 * TICK);
+        wheel.schedule("b", 5 * TICK);
+        final List<String> expired = new ArrayList<>();
+
+        wheel.expire(4 * TICK, expired::add);
+        assertEquals(1, expired.size());
+        assertEquals("a", expired.get(0));
+
+        wheel.expire(5 * TICK, expired::add);
+        assertEquals(2, expired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void deadlinesBeyondOneRoundWaitForTheirRound() {
+        final TimingWheel<String> wheel = new TimingWheel<>(10, TimeUnit.MILLISECONDS, 4, 0);
+        wheel.schedule("late", 10 * TICK);
+        final List<String> expired = new ArrayList<>();
+
+        wheel.expire(9 * TICK, expired::add);
+        assertTrue(expired.isEmpty());
+
+        wheel.expire(10 * TICK, expired::add);
+        assertEquals(1, expired.size());
+    }
+
+    @Test
+    public void cancelledItemsNeverExpire() {
+        final TimingWheel<String> wheel = new TimingWheel<>(10, TimeUnit.MILLISECONDS, 8, 0);
+        final TimingWheel.Timeout<String> timeout = wheel.schedule("a", 2 * TICK);
+        assertTrue(wheel.cancel(timeout));
+        assertFalse(wheel.cancel(timeout));
+
+        final List<String> expired = new ArrayList<>();
+        wheel.expire(100 * TICK, expired::add);
+        assertTrue(expired.isEmpty());
+    }
+}